@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.benchmarks;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.jam.AssetIndex;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lists the asset folders of a generated JAR the way Core does when running
+ * from a distribution, through a single {@link AssetIndex} scan, compared to
+ * streaming through the whole archive once per folder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AssetIndexBenchmark {
+    private static final String[] FOLDERS = {"ui", "textures", "animations", "bgm", "sfx"};
+    @Param({"1000", "10000"})
+    public int entries;
+    private File jar;
+
+    @Setup
+    public void setup() throws IOException {
+        Fixtures.initialize();
+        jar = new File(Fixtures.createDirectory("jar"), "assets.jar");
+        jar.deleteOnExit();
+        Fixtures.writeJar(jar, entries, 256);
+    }
+
+    @Benchmark
+    public void scanIndex(Blackhole blackhole) throws IOException {
+        AssetIndex index = AssetIndex.scan(jar);
+        for (String folder : FOLDERS) {
+            blackhole.consume(index.list(folder));
+        }
+    }
+
+    @Benchmark
+    public void streamPerFolder(Blackhole blackhole) throws IOException {
+        for (String folder : FOLDERS) {
+            Array<FileHandle> files = new Array<>();
+            try (ZipInputStream zip = new ZipInputStream(new FileInputStream(jar))) {
+                for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                    String name = entry.getName();
+                    if (name.matches(folder + "\\/.+")) {
+                        FileHandle fileHandle = Gdx.files.internal(name);
+                        files.add(fileHandle);
+                        files.removeValue(fileHandle.parent(), false);
+                    }
+                }
+            }
+            blackhole.consume(files);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.benchmarks;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.resolvers.AbsoluteFileHandleResolver;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.esotericsoftware.spine.SkeletonData;
+import com.ray3k.jam.AssetPipeline;
+import com.ray3k.jam.SkeletonDataLoader;
+import com.ray3k.jam.SkeletonDataLoader.SkeletonDataLoaderParameter;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads a set of generated skeletons through the {@link AssetManager}, which
+ * parses one asset at a time, and through the {@link AssetPipeline}, which
+ * parses them on a pool of worker threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class AssetLoadingBenchmark {
+    private static final int BONES = 100;
+    @Param({"16"})
+    public int skeletons;
+    @Param({"1", "4"})
+    public int threads;
+    private String atlasPath;
+    private String[] paths;
+    private AssetManager assetManager;
+    private AssetPipeline assetPipeline;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Fixtures.initialize();
+        File directory = Fixtures.createDirectory("skeletons");
+        atlasPath = new File(directory, "fixture.atlas").getAbsolutePath();
+        paths = new String[skeletons];
+        for (int i = 0; i < skeletons; i++) {
+            File file = new File(directory, "skeleton" + i + ".json");
+            file.deleteOnExit();
+            Fixtures.writeSkeletonJson(file, BONES, 10, 30);
+            paths[i] = file.getAbsolutePath();
+        }
+
+        assetManager = new AssetManager(new AbsoluteFileHandleResolver());
+        assetManager.setLoader(SkeletonData.class, new SkeletonDataLoader(assetManager.getFileHandleResolver()));
+        assetManager.addAsset(atlasPath, TextureAtlas.class, Fixtures.createAtlas(BONES));
+        assetPipeline = new AssetPipeline(assetManager, threads);
+    }
+
+    @TearDown(Level.Invocation)
+    public void unload() {
+        for (String path : paths) {
+            if (assetPipeline.contains(path)) {
+                assetPipeline.unload(path);
+            } else if (assetManager.isLoaded(path)) {
+                assetManager.unload(path);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void dispose() {
+        assetPipeline.dispose();
+        assetManager.dispose();
+    }
+
+    @Benchmark
+    public AssetManager assetManager() {
+        for (String path : paths) {
+            assetManager.load(path, SkeletonData.class, new SkeletonDataLoaderParameter(atlasPath));
+        }
+        assetManager.finishLoading();
+        return assetManager;
+    }
+
+    @Benchmark
+    public AssetPipeline assetPipeline() {
+        for (String path : paths) {
+            assetPipeline.loadSkeleton(path, atlasPath, 1);
+        }
+        while (!assetPipeline.update()) {
+            Thread.yield();
+        }
+        return assetPipeline;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.SkeletonData;
+import com.ray3k.jam.SkeletonDataLoader;
+import com.ray3k.jam.SkeletonInstances;
+import com.ray3k.jam.SkeletonInstances.Instance;
+import com.ray3k.jam.SpatialGrid;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Animates skeletons spread over a large world of which the view shows about
+ * two percent. The culled update only poses the skeletons found in the view
+ * through the spatial grid, the unculled update poses every skeleton as if
+ * the view covered the world. A tenth of the skeletons move on every
+ * operation so the grid is updated incrementally. Query and scan compare
+ * finding the visible skeletons in the grid against testing the bounds of
+ * every skeleton.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CullingBenchmark {
+    private static final float WORLD_SIZE = 12800;
+    private static final float CELL_SIZE = 512;
+    private static final float DELTA = 1 / 60f;
+    @Param({"10000"})
+    public int skeletons;
+    private final Rectangle view = new Rectangle(WORLD_SIZE / 2, WORLD_SIZE / 2, 1280, 720);
+    private final Rectangle world = new Rectangle(0, 0, WORLD_SIZE, WORLD_SIZE);
+    private final Array<Instance> found = new Array<>();
+    private SkeletonInstances instances;
+    private SpatialGrid<Instance> grid;
+    private Rectangle[] bounds;
+    private Random random;
+
+    @Setup
+    public void setup() throws IOException {
+        Fixtures.initialize();
+        File file = new File(Fixtures.createDirectory("culling"), "skeleton.json");
+        file.deleteOnExit();
+        Fixtures.writeSkeletonJson(file, 20, 2, 10);
+        SkeletonData skeletonData = SkeletonDataLoader.readSkeletonData(new FileHandle(file), Fixtures.createAtlas(20), 1);
+
+        random = new Random(0x5eed);
+        instances = new SkeletonInstances(ForkJoinPool.commonPool(), CELL_SIZE);
+        grid = new SpatialGrid<>(CELL_SIZE);
+        bounds = new Rectangle[skeletons];
+        for (int i = 0; i < skeletons; i++) {
+            Instance instance = instances.obtain(skeletonData);
+            instance.skeleton.setPosition(random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE);
+            instance.state.setAnimation(0, skeletonData.getAnimations().get(i % 2), true);
+            instance.state.update(random.nextFloat());
+
+            bounds[i] = new Rectangle(instance.skeleton.getX() - 300, instance.skeleton.getY() - 300, 600, 600);
+            grid.add(instance, bounds[i].x, bounds[i].y, bounds[i].width, bounds[i].height);
+        }
+    }
+
+    private void move() {
+        Array<Instance> all = instances.getInstances();
+        for (int i = 0, n = all.size / 10; i < n; i++) {
+            Skeleton skeleton = all.get(random.nextInt(all.size)).skeleton;
+            float x = skeleton.getX() + random.nextFloat() * 4 - 2;
+            float y = skeleton.getY() + random.nextFloat() * 4 - 2;
+            skeleton.setPosition(Math.max(0, Math.min(x, WORLD_SIZE)), Math.max(0, Math.min(y, WORLD_SIZE)));
+        }
+    }
+
+    @Benchmark
+    public SkeletonInstances update() {
+        move();
+        instances.update(DELTA, view);
+        return instances;
+    }
+
+    @Benchmark
+    public SkeletonInstances updateUnculled() {
+        move();
+        instances.update(DELTA, world);
+        return instances;
+    }
+
+    @Benchmark
+    public Array<Instance> query() {
+        found.clear();
+        return grid.query(view, found);
+    }
+
+    @Benchmark
+    public Array<Instance> scan() {
+        found.clear();
+        Array<Instance> all = instances.getInstances();
+        for (int i = 0; i < bounds.length; i++) {
+            if (bounds[i].overlaps(view)) {
+                found.add(all.get(i));
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.benchmarks;
+
+import com.ray3k.jam.EntityStore;
+import com.ray3k.jam.MovementSystem;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Moves every entity of an {@link EntityStore} for one simulation step, which
+ * has to fit well within a 16.7ms frame, compared to the same work on one
+ * object per entity visited in allocation-scattered order. Churn removes and
+ * recreates a thousand entities per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EntityStoreBenchmark {
+    private static final float WORLD_SIZE = 4096;
+    private static final float TIME_STEP = 1 / 60f;
+    private static final int CHURN = 1000;
+    @Param({"100000"})
+    public int entities;
+    private EntityStore store;
+    private final MovementSystem movementSystem = new MovementSystem(WORLD_SIZE, WORLD_SIZE);
+    private List<Entity> objects;
+    private Random random;
+
+    @Setup
+    public void setup() {
+        random = new Random(0x5eed);
+        store = new EntityStore(entities);
+        objects = new ArrayList<>(entities);
+        for (int i = 0; i < entities; i++) {
+            int handle = store.create(random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE);
+            int index = store.indexOf(handle);
+            store.getVelocityX()[index] = random.nextFloat() * 200 - 100;
+            store.getVelocityY()[index] = random.nextFloat() * 200 - 100;
+
+            Entity entity = new Entity();
+            entity.x = store.getX()[index];
+            entity.y = store.getY()[index];
+            entity.velocityX = store.getVelocityX()[index];
+            entity.velocityY = store.getVelocityY()[index];
+            objects.add(entity);
+        }
+        Collections.shuffle(objects, random);
+    }
+
+    @Benchmark
+    public EntityStore update() {
+        movementSystem.update(store, TIME_STEP);
+        return store;
+    }
+
+    @Benchmark
+    public List<Entity> updateObjects() {
+        for (Entity entity : objects) {
+            entity.x += entity.velocityX * TIME_STEP;
+            entity.y += entity.velocityY * TIME_STEP;
+            if (entity.x < 0 || entity.x > WORLD_SIZE) {
+                entity.velocityX = -entity.velocityX;
+                entity.x = Math.max(0, Math.min(entity.x, WORLD_SIZE));
+            }
+            if (entity.y < 0 || entity.y > WORLD_SIZE) {
+                entity.velocityY = -entity.velocityY;
+                entity.y = Math.max(0, Math.min(entity.y, WORLD_SIZE));
+            }
+        }
+        return objects;
+    }
+
+    @Benchmark
+    public EntityStore churn() {
+        int[] handles = store.getHandles();
+        for (int i = 0; i < CHURN; i++) {
+            store.remove(handles[random.nextInt(store.size())]);
+            store.create(random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE);
+        }
+        return store;
+    }
+
+    public static class Entity {
+        float x;
+        float y;
+        float velocityX;
+        float velocityY;
+    }
+}
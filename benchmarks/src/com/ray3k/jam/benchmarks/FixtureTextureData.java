@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.benchmarks;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.TextureData;
+
+/**
+ * Texture data without pixels. Combined with a mock GL it lets textures, atlases
+ * and regions be created without a GPU or native libraries.
+ */
+public class FixtureTextureData implements TextureData {
+    private final int width;
+    private final int height;
+
+    public FixtureTextureData(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public TextureDataType getType() {
+        return TextureDataType.Custom;
+    }
+
+    @Override
+    public boolean isPrepared() {
+        return true;
+    }
+
+    @Override
+    public void prepare() {
+    }
+
+    @Override
+    public Pixmap consumePixmap() {
+        return null;
+    }
+
+    @Override
+    public boolean disposePixmap() {
+        return false;
+    }
+
+    @Override
+    public void consumeCustomData(int target) {
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public Pixmap.Format getFormat() {
+        return Pixmap.Format.RGBA8888;
+    }
+
+    @Override
+    public boolean useMipMaps() {
+        return false;
+    }
+
+    @Override
+    public boolean isManaged() {
+        return false;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.benchmarks;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessFiles;
+import com.badlogic.gdx.backends.headless.mock.graphics.MockGraphics;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.badlogic.gdx.utils.JsonWriter;
+import com.ray3k.jam.headless.MockGL20;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates the inputs of the benchmarks so every run measures the same data
+ * without any assets on disk. Generators are seeded and produce identical
+ * files on every machine.
+ */
+public class Fixtures {
+    public static final int ATLAS_SIZE = 2048;
+    private static final long SEED = 0x5eed;
+
+    /**
+     * Installs a mock GL and headless file access so rendering and loading
+     * code runs outside of an application.
+     */
+    public static void initialize() {
+        if (Gdx.gl == null) {
+            Gdx.gl = Gdx.gl20 = MockGL20.create();
+        }
+        if (Gdx.files == null) {
+            Gdx.files = new HeadlessFiles();
+        }
+    }
+
+    /**
+     * Also provides the natives and graphics needed to create real batches.
+     * Their shaders have no uniforms under the mock GL, so uniform lookups
+     * must not fail.
+     */
+    public static void initializeBatches() {
+        initialize();
+        GdxNativesLoader.load();
+        if (Gdx.graphics == null) {
+            Gdx.graphics = new MockGraphics();
+        }
+        ShaderProgram.pedantic = false;
+    }
+
+    public static Texture createTexture() {
+        initialize();
+        return new Texture(new FixtureTextureData(ATLAS_SIZE, ATLAS_SIZE));
+    }
+
+    /**
+     * @param regions
+     * @return An atlas with regions named 'region0' and upward on a texture
+     * without pixels.
+     */
+    public static TextureAtlas createAtlas(int regions) {
+        Texture texture = createTexture();
+        TextureAtlas atlas = new TextureAtlas();
+        atlas.getTextures().add(texture);
+        int columns = (int) Math.ceil(Math.sqrt(regions));
+        int size = ATLAS_SIZE / columns;
+        for (int i = 0; i < regions; i++) {
+            atlas.addRegion("region" + i, texture, i % columns * size, i / columns * size, size, size);
+        }
+        return atlas;
+    }
+
+    /**
+     * Creates a temporary directory that is deleted when the JVM exits.
+     * @param prefix
+     * @return
+     * @throws IOException
+     */
+    public static File createDirectory(String prefix) throws IOException {
+        File directory = Files.createTempDirectory(prefix).toFile();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+    /**
+     * Writes a JAR laid out like a distribution of the game: class files
+     * outside of the asset folders and assets spread over the folders Core
+     * lists, some of them in group subfolders.
+     * @param file
+     * @param entries
+     * @param entrySize
+     * @throws IOException
+     */
+    public static void writeJar(File file, int entries, int entrySize) throws IOException {
+        String[] folders = {"com/ray3k/jam", "animations", "animations/game", "sfx", "sfx/menu", "bgm", "textures", "ui"};
+        Random random = new Random(SEED);
+        byte[] data = new byte[entrySize];
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < entries; i++) {
+                String folder = folders[i % folders.length];
+                zip.putNextEntry(new ZipEntry(folder + "/entry" + i + (folder.startsWith("com") ? ".class" : ".dat")));
+                random.nextBytes(data);
+                //half random, half repeated so the entries compress like real assets
+                for (int j = data.length / 2; j < data.length; j++) {
+                    data[j] = (byte) (j % 16);
+                }
+                zip.write(data);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Writes a Spine 3.7 JSON skeleton with a chain of bones, one slot per bone
+     * alternating between region and mesh attachments, and animations keying
+     * every bone.
+     * @param file
+     * @param bones
+     * @param animations
+     * @param keys Keys per timeline.
+     * @throws IOException
+     */
+    public static void writeSkeletonJson(File file, int bones, int animations, int keys) throws IOException {
+        Random random = new Random(SEED);
+        StringWriter buffer = new StringWriter();
+        JsonWriter json = new JsonWriter(buffer);
+        json.setOutputType(JsonWriter.OutputType.json);
+        json.object();
+        json.object("skeleton").set("hash", "fixture").set("spine", "3.7.83").set("width", 256).set("height", 256).pop();
+
+        json.array("bones");
+        json.object().set("name", "root").pop();
+        for (int i = 0; i < bones; i++) {
+            json.object().set("name", "bone" + i).set("parent", i == 0 ? "root" : "bone" + (i - 1)).set("length", 20)
+                    .set("x", random.nextFloat() * 10).set("y", random.nextFloat() * 10).set("rotation", random.nextFloat() * 360).pop();
+        }
+        json.pop();
+
+        json.array("slots");
+        for (int i = 0; i < bones; i++) {
+            json.object().set("name", "slot" + i).set("bone", "bone" + i).set("attachment", "region" + i).pop();
+        }
+        json.pop();
+
+        json.object("skins").object("default");
+        for (int i = 0; i < bones; i++) {
+            json.object("slot" + i).object("region" + i);
+            if (i % 2 == 0) {
+                json.set("width", 32).set("height", 32);
+            } else {
+                json.set("type", "mesh").set("hull", 4).set("width", 32).set("height", 32);
+                writeArray(json, "uvs", 0, 0, 1, 0, 1, 1, 0, 1);
+                writeArray(json, "triangles", 0, 1, 2, 2, 3, 0);
+                writeArray(json, "vertices", -16, -16, 16, -16, 16, 16, -16, 16);
+            }
+            json.pop().pop();
+        }
+        json.pop().pop();
+
+        json.object("animations");
+        for (int a = 0; a < animations; a++) {
+            json.object("animation" + a).object("bones");
+            for (int i = 0; i < bones; i++) {
+                json.object("bone" + i);
+                json.array("rotate");
+                for (int k = 0; k < keys; k++) {
+                    json.object().set("time", k / 10f).set("angle", random.nextFloat() * 360).pop();
+                }
+                json.pop();
+                json.array("translate");
+                for (int k = 0; k < keys; k++) {
+                    json.object().set("time", k / 10f).set("x", random.nextFloat() * 10).set("y", random.nextFloat() * 10).pop();
+                }
+                json.pop();
+                json.pop();
+            }
+            json.pop().pop();
+        }
+        json.pop();
+
+        json.pop();
+        json.close();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(buffer.toString());
+        }
+    }
+
+    private static void writeArray(JsonWriter json, String name, float... values) throws IOException {
+        json.array(name);
+        for (float value : values) {
+            json.value(value);
+        }
+        json.pop();
+    }
+}
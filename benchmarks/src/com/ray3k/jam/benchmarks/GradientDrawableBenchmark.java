@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.benchmarks;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.ray3k.jam.Gradient;
+import com.ray3k.jam.GradientBatch;
+import com.ray3k.jam.GradientDrawable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generates gradient vertices into a {@link RecordingBatch}. The cached draw
+ * of {@link GradientDrawable} is compared to recomputing every vertex on each
+ * call, as the drawable did before it kept its vertex data, and to drawing a
+ * three stop gradient through {@link GradientBatch}. Scores are draws per
+ * second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GradientDrawableBenchmark {
+    private static final int DRAWS = 1000;
+    private final Color temp = new Color();
+    private final float[] verts = new float[20];
+    private RecordingBatch batch;
+    private TextureRegion region;
+    private GradientDrawable drawable;
+    private GradientBatch gradientBatch;
+    private Gradient gradient;
+
+    @Setup
+    public void setup() {
+        batch = new RecordingBatch(DRAWS);
+        region = new TextureRegion(Fixtures.createTexture(), 0, 0, 1, 1);
+        drawable = new GradientDrawable(region);
+        drawable.getColor1().set(Color.RED);
+        drawable.getColor2().set(Color.GREEN);
+        drawable.getColor3().set(Color.BLUE);
+        drawable.getColor4().set(Color.WHITE);
+        gradientBatch = new GradientBatch(region);
+        gradient = new Gradient(Gradient.Direction.HORIZONTAL, Color.RED, Color.YELLOW, Color.GREEN);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public long cached() {
+        batch.reset();
+        for (int i = 0; i < DRAWS; i++) {
+            drawable.draw(batch, i, i, 100, 20);
+        }
+        batch.flush();
+        return batch.vertexCount;
+    }
+
+    /**
+     * The batch color changes between draws, so the cached colors are
+     * recomputed every time.
+     * @return
+     */
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public long cachedTintChanges() {
+        batch.reset();
+        for (int i = 0; i < DRAWS; i++) {
+            batch.setColor(1f, 1f, 1f, (i & 1) == 0 ? 1f : .5f);
+            drawable.draw(batch, i, i, 100, 20);
+        }
+        batch.setColor(Color.WHITE);
+        batch.flush();
+        return batch.vertexCount;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public long uncached() {
+        batch.reset();
+        for (int i = 0; i < DRAWS; i++) {
+            drawUncached(batch, i, i, 100, 20);
+        }
+        batch.flush();
+        return batch.vertexCount;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public long gradientBatch() {
+        batch.reset();
+        for (int i = 0; i < DRAWS; i++) {
+            gradientBatch.add(gradient, i, i, 100, 20);
+        }
+        gradientBatch.flush(batch);
+        batch.flush();
+        return batch.vertexCount;
+    }
+
+    /**
+     * The draw of GradientDrawable before its vertex data was cached.
+     */
+    private void drawUncached(Batch batch, float x, float y, float width, float height) {
+        int i = 0;
+        verts[i++] = x;
+        verts[i++] = y;
+        temp.set(drawable.getColor1());
+        verts[i++] = temp.mul(batch.getColor()).toFloatBits();
+        verts[i++] = region.getU();
+        verts[i++] = region.getV2();
+
+        verts[i++] = x;
+        verts[i++] = y + height;
+        temp.set(drawable.getColor2());
+        verts[i++] = temp.mul(batch.getColor()).toFloatBits();
+        verts[i++] = region.getU();
+        verts[i++] = region.getV();
+
+        verts[i++] = x + width;
+        verts[i++] = y + height;
+        temp.set(drawable.getColor3());
+        verts[i++] = temp.mul(batch.getColor()).toFloatBits();
+        verts[i++] = region.getU2();
+        verts[i++] = region.getV();
+
+        verts[i++] = x + width;
+        verts[i++] = y;
+        temp.set(drawable.getColor4());
+        verts[i++] = temp.mul(batch.getColor()).toFloatBits();
+        verts[i++] = region.getU2();
+        verts[i++] = region.getV2();
+
+        batch.draw(region.getTexture(), verts, 0, verts.length);
+    }
+}
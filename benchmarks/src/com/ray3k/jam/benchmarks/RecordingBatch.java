@@ -0,0 +1,311 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.benchmarks;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Affine2;
+import com.badlogic.gdx.math.Matrix4;
+
+/**
+ * A batch that copies submitted sprite vertices into a buffer without
+ * rendering them. It counts vertices and the flushes a real batch would
+ * perform on texture switches, so vertex generation can be measured without
+ * any GL work. Only sprite vertex arrays are recorded; the other draw methods
+ * just count the switch of texture.
+ */
+public class RecordingBatch implements Batch {
+    private final float[] vertices;
+    private final Color color = new Color(Color.WHITE);
+    private final Matrix4 projectionMatrix = new Matrix4();
+    private final Matrix4 transformMatrix = new Matrix4();
+    private int index;
+    private Texture lastTexture;
+    private boolean drawing;
+    private boolean blending = true;
+    private int blendSrcFunc = GL20.GL_SRC_ALPHA;
+    private int blendDstFunc = GL20.GL_ONE_MINUS_SRC_ALPHA;
+    private int blendSrcFuncAlpha = GL20.GL_SRC_ALPHA;
+    private int blendDstFuncAlpha = GL20.GL_ONE_MINUS_SRC_ALPHA;
+    private ShaderProgram shader;
+    public int flushes;
+    public long vertexCount;
+
+    /**
+     * @param size The number of sprites that fit in the buffer before it
+     * wraps around.
+     */
+    public RecordingBatch(int size) {
+        vertices = new float[size * 20];
+    }
+
+    /**
+     * Clears the counters and the recorded vertices.
+     */
+    public void reset() {
+        index = 0;
+        flushes = 0;
+        vertexCount = 0;
+        lastTexture = null;
+    }
+
+    /**
+     * @return The vertex buffer, so benchmarks can consume it.
+     */
+    public float[] getVertices() {
+        return vertices;
+    }
+
+    private void switchTexture(Texture texture) {
+        if (texture != lastTexture) {
+            flush();
+            lastTexture = texture;
+        }
+    }
+
+    @Override
+    public void draw(Texture texture, float[] spriteVertices, int offset, int count) {
+        switchTexture(texture);
+        while (count > 0) {
+            if (index == vertices.length) {
+                flush();
+            }
+            int copyCount = Math.min(vertices.length - index, count);
+            System.arraycopy(spriteVertices, offset, vertices, index, copyCount);
+            index += copyCount;
+            offset += copyCount;
+            count -= copyCount;
+            vertexCount += copyCount / 5;
+        }
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation, int srcX, int srcY, int srcWidth, int srcHeight, boolean flipX, boolean flipY) {
+        switchTexture(texture);
+        vertexCount += 4;
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float width, float height, int srcX, int srcY, int srcWidth, int srcHeight, boolean flipX, boolean flipY) {
+        switchTexture(texture);
+        vertexCount += 4;
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, int srcX, int srcY, int srcWidth, int srcHeight) {
+        switchTexture(texture);
+        vertexCount += 4;
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float width, float height, float u, float v, float u2, float v2) {
+        switchTexture(texture);
+        vertexCount += 4;
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y) {
+        switchTexture(texture);
+        vertexCount += 4;
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float width, float height) {
+        switchTexture(texture);
+        vertexCount += 4;
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y) {
+        switchTexture(region.getTexture());
+        vertexCount += 4;
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float width, float height) {
+        switchTexture(region.getTexture());
+        vertexCount += 4;
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation) {
+        switchTexture(region.getTexture());
+        vertexCount += 4;
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation, boolean clockwise) {
+        switchTexture(region.getTexture());
+        vertexCount += 4;
+    }
+
+    @Override
+    public void draw(TextureRegion region, float width, float height, Affine2 transform) {
+        switchTexture(region.getTexture());
+        vertexCount += 4;
+    }
+
+    @Override
+    public void flush() {
+        if (index > 0) {
+            flushes++;
+            index = 0;
+        }
+    }
+
+    @Override
+    public void begin() {
+        drawing = true;
+    }
+
+    @Override
+    public void end() {
+        flush();
+        lastTexture = null;
+        drawing = false;
+    }
+
+    @Override
+    public void setColor(Color tint) {
+        color.set(tint);
+    }
+
+    @Override
+    public void setColor(float r, float g, float b, float a) {
+        color.set(r, g, b, a);
+    }
+
+    public void setColor(float packedColor) {
+        Color.abgr8888ToColor(color, packedColor);
+    }
+
+    public void setPackedColor(float packedColor) {
+        Color.abgr8888ToColor(color, packedColor);
+    }
+
+    @Override
+    public Color getColor() {
+        return color;
+    }
+
+    @Override
+    public float getPackedColor() {
+        return color.toFloatBits();
+    }
+
+    @Override
+    public void disableBlending() {
+        flush();
+        blending = false;
+    }
+
+    @Override
+    public void enableBlending() {
+        flush();
+        blending = true;
+    }
+
+    @Override
+    public void setBlendFunction(int srcFunc, int dstFunc) {
+        setBlendFunctionSeparate(srcFunc, dstFunc, srcFunc, dstFunc);
+    }
+
+    @Override
+    public void setBlendFunctionSeparate(int srcFuncColor, int dstFuncColor, int srcFuncAlpha, int dstFuncAlpha) {
+        flush();
+        blendSrcFunc = srcFuncColor;
+        blendDstFunc = dstFuncColor;
+        blendSrcFuncAlpha = srcFuncAlpha;
+        blendDstFuncAlpha = dstFuncAlpha;
+    }
+
+    @Override
+    public int getBlendSrcFunc() {
+        return blendSrcFunc;
+    }
+
+    @Override
+    public int getBlendDstFunc() {
+        return blendDstFunc;
+    }
+
+    @Override
+    public int getBlendSrcFuncAlpha() {
+        return blendSrcFuncAlpha;
+    }
+
+    @Override
+    public int getBlendDstFuncAlpha() {
+        return blendDstFuncAlpha;
+    }
+
+    @Override
+    public Matrix4 getProjectionMatrix() {
+        return projectionMatrix;
+    }
+
+    @Override
+    public Matrix4 getTransformMatrix() {
+        return transformMatrix;
+    }
+
+    @Override
+    public void setProjectionMatrix(Matrix4 projection) {
+        projectionMatrix.set(projection);
+    }
+
+    @Override
+    public void setTransformMatrix(Matrix4 transform) {
+        transformMatrix.set(transform);
+    }
+
+    @Override
+    public void setShader(ShaderProgram shader) {
+        flush();
+        this.shader = shader;
+    }
+
+    @Override
+    public ShaderProgram getShader() {
+        return shader;
+    }
+
+    @Override
+    public boolean isBlendingEnabled() {
+        return blending;
+    }
+
+    @Override
+    public boolean isDrawing() {
+        return drawing;
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.benchmarks;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.esotericsoftware.spine.utils.TwoColorPolygonBatch;
+import com.ray3k.jam.RenderQueue;
+import com.ray3k.jam.SkeletonVertices;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Draws a scene of sprites taken at random from several atlases, as a crowd
+ * of characters from different atlases would be drawn, through a
+ * {@link TwoColorPolygonBatch} on the mock GL. The direct draw submits the
+ * sprites in scene order and flushes on every atlas change, the queued draw
+ * sorts them through a {@link RenderQueue} first. Flushes are reported as an
+ * extra counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RenderQueueBenchmark {
+    private static final int SPRITES = 2000;
+    @Param({"1", "3", "6"})
+    public int atlases;
+    private TwoColorPolygonBatch batch;
+    private RenderQueue queue;
+    private Texture[] textures;
+    private float[][] vertices;
+
+    @Setup
+    public void setup() {
+        Fixtures.initializeBatches();
+        batch = new TwoColorPolygonBatch(SPRITES * 4, SPRITES * 6);
+        queue = new RenderQueue();
+
+        TextureAtlas[] sources = new TextureAtlas[atlases];
+        for (int i = 0; i < atlases; i++) {
+            sources[i] = Fixtures.createAtlas(16);
+        }
+
+        Random random = new Random(0x5eed);
+        float light = Color.WHITE.toFloatBits();
+        textures = new Texture[SPRITES];
+        vertices = new float[SPRITES][];
+        for (int i = 0; i < SPRITES; i++) {
+            AtlasRegion region = sources[random.nextInt(atlases)].getRegions().get(random.nextInt(16));
+            float x = random.nextFloat() * 1280;
+            float y = random.nextFloat() * 720;
+            textures[i] = region.getTexture();
+            vertices[i] = quad(region, x, y, light);
+        }
+    }
+
+    private float[] quad(TextureRegion region, float x, float y, float light) {
+        float width = region.getRegionWidth();
+        float height = region.getRegionHeight();
+        return new float[] {
+            x, y, light, 0, region.getU(), region.getV2(),
+            x, y + height, light, 0, region.getU(), region.getV(),
+            x + width, y + height, light, 0, region.getU2(), region.getV(),
+            x + width, y, light, 0, region.getU2(), region.getV2()};
+    }
+
+    @Benchmark
+    public TwoColorPolygonBatch direct(Flushes flushes) {
+        int start = batch.totalRenderCalls;
+        batch.begin();
+        for (int i = 0; i < SPRITES; i++) {
+            batch.draw(textures[i], vertices[i], 0, 24, SkeletonVertices.QUAD_TRIANGLES, 0, 6);
+        }
+        batch.end();
+        flushes.flushes += batch.totalRenderCalls - start;
+        return batch;
+    }
+
+    @Benchmark
+    public TwoColorPolygonBatch queued(Flushes flushes) {
+        int start = batch.totalRenderCalls;
+        batch.begin();
+        for (int i = 0; i < SPRITES; i++) {
+            queue.draw(textures[i], vertices[i], 0, 24, SkeletonVertices.QUAD_TRIANGLES, 0, 6);
+        }
+        queue.flush(batch);
+        batch.end();
+        flushes.flushes += batch.totalRenderCalls - start;
+        return batch;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Flushes {
+        public long flushes;
+    }
+}
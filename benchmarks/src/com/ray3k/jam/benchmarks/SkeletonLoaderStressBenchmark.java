@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.benchmarks;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.resolvers.AbsoluteFileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.Skin;
+import com.esotericsoftware.spine.SlotData;
+import com.esotericsoftware.spine.attachments.Attachment;
+import com.esotericsoftware.spine.attachments.MeshAttachment;
+import com.esotericsoftware.spine.attachments.RegionAttachment;
+import com.ray3k.jam.SkeletonDataLoader;
+import com.ray3k.jam.SkeletonDataLoader.SkeletonDataLoaderParameter;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses dozens of skeletons at the same time on a single
+ * {@link SkeletonDataLoader}, as the asset pipeline's workers do, and checks
+ * that every request gets its own skeleton back and that every attachment
+ * resolved its region in the shared atlas. Each skeleton has a different
+ * number of bones so a result handed to the wrong request is detected. The
+ * run fails with an exception on the first mismatch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SkeletonLoaderStressBenchmark {
+    private static final int MIN_BONES = 10;
+    @Param({"48"})
+    public int skeletons;
+    @Param({"8"})
+    public int threads;
+    private String atlasPath;
+    private String[] paths;
+    private TextureAtlas atlas;
+    private AssetManager assetManager;
+    private SkeletonDataLoader loader;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Fixtures.initialize();
+        File directory = Fixtures.createDirectory("stress");
+        atlasPath = new File(directory, "fixture.atlas").getAbsolutePath();
+        paths = new String[skeletons];
+        for (int i = 0; i < skeletons; i++) {
+            File file = new File(directory, "skeleton" + i + ".json");
+            file.deleteOnExit();
+            Fixtures.writeSkeletonJson(file, getBones(i), 2, 10);
+            paths[i] = file.getAbsolutePath();
+        }
+
+        assetManager = new AssetManager(new AbsoluteFileHandleResolver());
+        atlas = Fixtures.createAtlas(getBones(skeletons - 1));
+        assetManager.addAsset(atlasPath, TextureAtlas.class, atlas);
+        loader = new SkeletonDataLoader(assetManager.getFileHandleResolver());
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void dispose() {
+        executor.shutdownNow();
+        assetManager.dispose();
+    }
+
+    private static int getBones(int skeleton) {
+        return MIN_BONES + skeleton;
+    }
+
+    /**
+     * Checks that the attachment of every slot uses the region of the shared
+     * atlas it names.
+     * @param skeletonData
+     */
+    private void checkRegions(SkeletonData skeletonData) {
+        Skin skin = skeletonData.getDefaultSkin();
+        Array<SlotData> slots = skeletonData.getSlots();
+        for (int i = 0; i < slots.size; i++) {
+            String name = slots.get(i).getAttachmentName();
+            Attachment attachment = skin.getAttachment(i, name);
+            TextureRegion region = attachment instanceof RegionAttachment ? ((RegionAttachment) attachment).getRegion()
+                    : attachment instanceof MeshAttachment ? ((MeshAttachment) attachment).getRegion() : null;
+            if (region == null || region != atlas.findRegion(name)) {
+                throw new IllegalStateException("Attachment " + name + " of " + skeletonData.getName() + " is not a region of the shared atlas");
+            }
+        }
+    }
+
+    @Benchmark
+    public int loadConcurrently() throws InterruptedException, ExecutionException {
+        SkeletonDataLoaderParameter parameter = new SkeletonDataLoaderParameter(atlasPath);
+        //start every parse at once so the requests overlap as much as possible
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (String path : paths) {
+            FileHandle file = loader.resolve(path);
+            futures.add(executor.submit(() -> {
+                start.await();
+                loader.loadAsync(assetManager, path, file, parameter);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        int bones = 0;
+        for (int i = 0; i < skeletons; i++) {
+            SkeletonData skeletonData = loader.loadSync(assetManager, paths[i], loader.resolve(paths[i]), parameter);
+            if (skeletonData == null) {
+                throw new IllegalStateException("No skeleton returned for " + paths[i]);
+            }
+            //the root bone is added to the generated bones
+            if (!skeletonData.getName().equals("skeleton" + i) || skeletonData.getBones().size != getBones(i) + 1) {
+                throw new IllegalStateException("Wrong skeleton returned for " + paths[i] + ": " + skeletonData.getName());
+            }
+            checkRegions(skeletonData);
+            bones += skeletonData.getBones().size;
+        }
+        return bones;
+    }
+}
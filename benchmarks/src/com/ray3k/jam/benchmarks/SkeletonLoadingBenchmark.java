@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.TextureAtlasData;
+import com.esotericsoftware.spine.SkeletonData;
+import com.ray3k.jam.SkeletonDataLoader;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses a skeleton through {@link SkeletonDataLoader} as it is done when
+ * loading assets. Generated JSON skeletons are used by default. Spine can't
+ * be driven offline to produce binaries, so the binary format is only
+ * measured against skeletons exported by the desktop skeletonBinaries task:
+ * set the 'benchmarks.skeletonBinaries' and 'benchmarks.assets' properties
+ * and both formats load the first exported skeleton and its JSON source.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SkeletonLoadingBenchmark {
+    @Param({"json", "binary"})
+    public String format;
+    /**
+     * The size of the generated skeleton, ignored for exported skeletons.
+     */
+    @Param({"50", "200"})
+    public int bones;
+    private TextureAtlas atlas;
+    private FileHandle file;
+
+    @Setup
+    public void setup() throws IOException {
+        Fixtures.initialize();
+        String binaries = System.getProperty("benchmarks.skeletonBinaries");
+        if (binaries != null) {
+            setupExported(new File(binaries), new File(System.getProperty("benchmarks.assets")));
+        } else if (format.equals("binary")) {
+            throw new IllegalStateException("Binary skeletons need the benchmarks.skeletonBinaries property");
+        } else {
+            File skeleton = new File(Fixtures.createDirectory("skeleton"), "skeleton.json");
+            skeleton.deleteOnExit();
+            Fixtures.writeSkeletonJson(skeleton, bones, 10, 30);
+            file = new FileHandle(skeleton);
+            atlas = Fixtures.createAtlas(bones);
+        }
+    }
+
+    private void setupExported(File binaries, File assets) {
+        FileHandle binary = find(new FileHandle(binaries), "skel");
+        FileHandle atlasFile = find(new FileHandle(new File(assets, "textures")), "atlas");
+        if (binary == null || atlasFile == null) {
+            throw new IllegalStateException("No exported skeleton or atlas found");
+        }
+
+        //the export mirrors the asset folders below its root folder
+        String path = binary.path().substring(new FileHandle(new File(binaries, "skeleton-binaries")).path().length() + 1);
+        file = format.equals("binary") ? binary : new FileHandle(new File(assets, path.substring(0, path.lastIndexOf('.')) + ".json"));
+
+        TextureAtlasData data = new TextureAtlasData(atlasFile, atlasFile.parent(), false);
+        for (TextureAtlasData.Page page : data.getPages()) {
+            page.texture = Fixtures.createTexture();
+        }
+        atlas = new TextureAtlas(data);
+    }
+
+    private FileHandle find(FileHandle folder, String extension) {
+        for (FileHandle child : folder.list()) {
+            FileHandle found = child.isDirectory() ? find(child, extension) : child.extension().equals(extension) ? child : null;
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public SkeletonData readSkeletonData() {
+        return SkeletonDataLoader.readSkeletonData(file, atlas, 1);
+    }
+}
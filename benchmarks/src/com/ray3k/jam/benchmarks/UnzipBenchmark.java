@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.ray3k.jam.UnzipUtility;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extracts a folder of a generated JAR with {@link UnzipUtility}, once into an
+ * empty destination and once over an earlier extraction where the index lets
+ * every entry be skipped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class UnzipBenchmark {
+    @Param({"1000"})
+    public int entries;
+    @Param({"16384"})
+    public int entrySize;
+    @Param({"1", "4"})
+    public int threads;
+    private File jar;
+    private FileHandle destination;
+    private FileHandle index;
+    private final UnzipUtility unzipUtility = new UnzipUtility();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File directory = Fixtures.createDirectory("unzip");
+        jar = new File(directory, "assets.jar");
+        Fixtures.writeJar(jar, entries, entrySize);
+        destination = new FileHandle(new File(directory, "sfx"));
+        index = destination.sibling(destination.name() + ".index");
+        unzipUtility.setThreads(threads);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Empty {
+        @Setup(Level.Invocation)
+        public void setup(UnzipBenchmark benchmark) {
+            benchmark.destination.deleteDirectory();
+            benchmark.index.delete();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Extracted {
+        @Setup(Level.Invocation)
+        public void setup(UnzipBenchmark benchmark) throws IOException {
+            if (!benchmark.index.exists()) {
+                benchmark.unzipUtility.unzip(benchmark.jar, "sfx", benchmark.destination);
+            }
+        }
+    }
+
+    @Benchmark
+    public void fullExtraction(Empty empty) throws IOException {
+        unzipUtility.unzip(jar, "sfx", destination);
+    }
+
+    @Benchmark
+    public void incrementalExtraction(Extracted extracted) throws IOException {
+        unzipUtility.unzip(jar, "sfx", destination);
+    }
+}
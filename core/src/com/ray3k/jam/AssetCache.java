@@ -0,0 +1,295 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.audio.Music;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.esotericsoftware.spine.Animation;
+import com.esotericsoftware.spine.SkeletonData;
+import com.ray3k.jam.SkeletonDataLoader.SkeletonDataLoaderParameter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Memory budget for the assets in {@link Core#assetManager}. Every asset
+ * retrieved through {@link #get(String, Class)} is tracked with an estimate of
+ * its memory footprint, and the cache holds a reference to it in the asset
+ * manager, so assets stay resident after the groups that loaded them are
+ * released. A skeleton also holds a reference to its atlas. When the total
+ * exceeds the budget, the least recently used assets that are not pinned and
+ * that nothing but the cache references are unloaded. Assets still held by a
+ * group, the pipeline or a dependent asset are never evicted. Evicted assets
+ * are reloaded synchronously the next time they are requested, so callers
+ * should retrieve assets through the cache whenever they use them instead of
+ * holding on to them. Pin any asset that must stay resident, such as a
+ * skeleton with live instances or a sound that is playing.
+ */
+public class AssetCache {
+    /**
+     * Music is streamed, only its decoding buffers stay resident.
+     */
+    private static final long MUSIC_BUFFER_BYTES = 64 * 1024;
+    private final AssetManager assetManager;
+    private final AssetPipeline assetPipeline;
+    private final ObjectMap<String, AssetDescriptor<?>> descriptors = new ObjectMap<>();
+    /**
+     * Tracked assets in access order, least recently used first.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, .75f, true);
+    private long budgetBytes;
+    private long trackedBytes;
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    public AssetCache(AssetManager assetManager, AssetPipeline assetPipeline, long budgetBytes) {
+        this.assetManager = assetManager;
+        this.assetPipeline = assetPipeline;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Registers how an asset is loaded so it can be reloaded after eviction.
+     * Assets loaded without parameters don't need to be registered.
+     * @param descriptor
+     */
+    public void register(AssetDescriptor<?> descriptor) {
+        descriptors.put(descriptor.fileName, descriptor);
+    }
+
+    /**
+     * Returns the asset, reloading it first if it has been evicted or was
+     * never loaded. An asset the pipeline is still loading is finished first.
+     * @param <T>
+     * @param path
+     * @param type
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String path, Class<T> type) {
+        Entry entry = entries.get(path);
+        if (entry != null && entry.asset != null) {
+            hits++;
+            return (T) entry.asset;
+        }
+
+        boolean referenced = false;
+        if (assetManager.isLoaded(path, type)) {
+            hits++;
+        } else {
+            misses++;
+            if (assetPipeline.contains(path)) {
+                assetPipeline.finishLoading(path);
+            } else {
+                AssetDescriptor<?> descriptor = descriptors.get(path);
+                if (descriptor == null) {
+                    assetManager.load(path, type);
+                } else {
+                    assetManager.load((AssetDescriptor<T>) descriptor);
+                }
+                assetManager.finishLoadingAsset(path);
+                //the reference of this load belongs to the cache
+                referenced = true;
+            }
+        }
+
+        if (!referenced) {
+            reference(path);
+        }
+
+        T asset = assetManager.get(path, type);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(path, entry);
+        }
+        entry.asset = asset;
+        entry.bytes = estimateBytes(path, asset);
+        trackedBytes += entry.bytes;
+
+        //skeletons loaded by the pipeline don't reference their atlas in the asset manager
+        AssetDescriptor<?> descriptor = descriptors.get(path);
+        if (descriptor != null && descriptor.params instanceof SkeletonDataLoaderParameter) {
+            entry.dependency = ((SkeletonDataLoaderParameter) descriptor.params).atlasName;
+            reference(entry.dependency);
+        }
+
+        evict(path);
+        return asset;
+    }
+
+    private void reference(String path) {
+        assetManager.setReferenceCount(path, assetManager.getReferenceCount(path) + 1);
+    }
+
+    /**
+     * Unloads least recently used assets until the budget is met.
+     * @param exclude An asset that must not be evicted, typically the one just
+     * requested.
+     */
+    private void evict(String exclude) {
+        //evicting a skeleton can make its atlas evictable, which may come earlier in the order
+        boolean evicted = true;
+        while (evicted && trackedBytes > budgetBytes) {
+            evicted = false;
+            for (Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext() && trackedBytes > budgetBytes;) {
+                Map.Entry<String, Entry> mapEntry = iterator.next();
+                String path = mapEntry.getKey();
+                Entry entry = mapEntry.getValue();
+
+                //anything but the cache's own reference means a group, the pipeline or a dependent still uses it
+                if (entry.pinned || entry.asset == null || path.equals(exclude) || assetManager.getReferenceCount(path) > 1) {
+                    continue;
+                }
+
+                iterator.remove();
+                trackedBytes -= entry.bytes;
+                evictions++;
+                evicted = true;
+                assetManager.unload(path);
+                if (entry.dependency != null) {
+                    assetManager.unload(entry.dependency);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the asset from being evicted.
+     * @param path
+     */
+    public void pin(String path) {
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(path, entry);
+        }
+        entry.pinned = true;
+    }
+
+    public void unpin(String path) {
+        Entry entry = entries.get(path);
+        if (entry != null) {
+            entry.pinned = false;
+        }
+    }
+
+    /**
+     * Estimates the memory held by a loaded asset. Textures are measured by
+     * their pixel data, sounds by their PCM data assuming typical compression
+     * of the source file and skeletons by their bone, slot and timeline counts.
+     * @param path
+     * @param asset
+     * @return
+     */
+    public long estimateBytes(String path, Object asset) {
+        if (asset instanceof Texture) {
+            return estimateBytes((Texture) asset);
+        } else if (asset instanceof TextureAtlas) {
+            long bytes = 0;
+            for (Texture texture : ((TextureAtlas) asset).getTextures()) {
+                bytes += estimateBytes(texture);
+            }
+            return bytes;
+        } else if (asset instanceof Sound) {
+            long fileBytes = assetManager.getFileHandleResolver().resolve(path).length();
+            String extension = path.substring(path.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            return extension.equals("wav") ? fileBytes : fileBytes * 10;
+        } else if (asset instanceof Music) {
+            return MUSIC_BUFFER_BYTES;
+        } else if (asset instanceof SkeletonData) {
+            SkeletonData skeletonData = (SkeletonData) asset;
+            long bytes = skeletonData.getBones().size * 160L + skeletonData.getSlots().size * 96L;
+            for (Animation animation : skeletonData.getAnimations()) {
+                bytes += animation.getTimelines().size * 256L;
+            }
+            return bytes;
+        }
+        return 0;
+    }
+
+    private long estimateBytes(Texture texture) {
+        long bytes = (long) texture.getWidth() * texture.getHeight() * getBytesPerPixel(texture.getTextureData().getFormat());
+        //a full mip chain adds a third
+        return texture.getTextureData().useMipMaps() ? bytes * 4 / 3 : bytes;
+    }
+
+    private int getBytesPerPixel(Pixmap.Format format) {
+        switch (format) {
+            case Alpha:
+            case Intensity:
+                return 1;
+            case LuminanceAlpha:
+            case RGB565:
+            case RGBA4444:
+                return 2;
+            case RGB888:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        evict(null);
+    }
+
+    public long getTrackedBytes() {
+        return trackedBytes;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    public int getEvictions() {
+        return evictions;
+    }
+
+    private static class Entry {
+        Object asset;
+        /**
+         * The atlas of a skeleton, referenced by the cache along with it.
+         */
+        String dependency;
+        long bytes;
+        boolean pinned;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.esotericsoftware.spine.SkeletonData;
+import com.ray3k.jam.SkeletonDataLoader.SkeletonDataLoaderParameter;
+
+/**
+ * Named sets of assets that are loaded on demand. Screens acquire the groups
+ * they need when shown and release them when hidden. A group is loaded when
+ * its first reference is acquired and unloaded once its last reference is
+ * released, so resident memory follows the active screen instead of the whole
+ * content set. A single group can be preloaded in the background for the
+ * screen that is likely to follow.
+ * <p>
+ * Released groups are only unloaded by {@link #switchTo(String, String)} or
+ * {@link #unloadReleased()}. The outgoing screen releases its group in hide()
+ * before the incoming screen acquires its own in show(), so a group that the
+ * incoming screen acquires or preloads again stays loaded instead of being
+ * unloaded and queued again.
+ * <p>
+ * Groups are filled by {@link Core} from the asset folders. Files placed in a
+ * subfolder, such as 'sfx/game/hit.wav', belong to the group named after the
+ * subfolder. Files directly inside an asset folder belong to {@link #COMMON},
+ * which stays loaded for the whole session.
+ */
+public class AssetGroups {
+    public static final String COMMON = "common";
+    public static final String TITLE = "title";
+    public static final String MENU = "menu";
+    public static final String GAME = "game";
+    public static final String CREDITS = "credits";
+
+    private final AssetManager assetManager;
+    private final AssetPipeline assetPipeline;
+    private final AssetCache assetCache;
+    private final ObjectMap<String, Group> groups = new ObjectMap<>();
+    private Group preloaded;
+    private final Array<Group> released = new Array<>();
+
+    public AssetGroups(AssetManager assetManager, AssetPipeline assetPipeline, AssetCache assetCache) {
+        this.assetManager = assetManager;
+        this.assetPipeline = assetPipeline;
+        this.assetCache = assetCache;
+    }
+
+    private Group getGroup(String name) {
+        Group group = groups.get(name);
+        if (group == null) {
+            group = new Group(name);
+            groups.put(name, group);
+        }
+        return group;
+    }
+
+    public void addSkin(String group, String path) {
+        getGroup(group).entries.add(new Entry(path, null, null, Skin.class));
+    }
+
+    public void addSound(String group, String path) {
+        getGroup(group).entries.add(new Entry(path, null, null, null));
+    }
+
+    /**
+     * @param group
+     * @param path
+     * @param sourcePath The file the skeleton is parsed from, see
+     * {@link AssetPipeline#loadSkeleton(String, String, String, float)}.
+     * @param atlasPath
+     */
+    public void addSkeleton(String group, String path, String sourcePath, String atlasPath) {
+        getGroup(group).entries.add(new Entry(path, sourcePath, atlasPath, null));
+        //reloads after an eviction parse the same source as the pipeline, such as an exported binary
+        SkeletonDataLoaderParameter parameter = new SkeletonDataLoaderParameter(atlasPath);
+        if (!sourcePath.equals(path)) {
+            parameter.sourcePath = sourcePath;
+        }
+        assetCache.register(new AssetDescriptor<>(path, SkeletonData.class, parameter));
+    }
+
+    /**
+     * Adds a reference to the group, queueing its assets if it was not loaded.
+     * @param name
+     */
+    public void acquire(String name) {
+        Group group = getGroup(name);
+        if (group.references++ == 0 && !group.loaded) {
+            group.loaded = true;
+            for (Entry entry : group.entries) {
+                entry.load();
+            }
+        }
+    }
+
+    /**
+     * Removes a reference to the group. Once no references remain its assets
+     * are unloaded by the next {@link #switchTo(String, String)} or
+     * {@link #unloadReleased()}.
+     * @param name
+     */
+    public void release(String name) {
+        Group group = groups.get(name);
+        if (group == null || group.references == 0) {
+            return;
+        }
+
+        if (--group.references == 0 && !released.contains(group, true)) {
+            released.add(group);
+        }
+    }
+
+    /**
+     * Acquires the group of a screen being shown and preloads the group of the
+     * screen likely to follow, then unloads the released groups neither of
+     * them uses.
+     * @param name
+     * @param next The group to preload or null.
+     */
+    public void switchTo(String name, String next) {
+        acquire(name);
+        if (next != null) {
+            preload(next);
+        }
+        unloadReleased();
+    }
+
+    /**
+     * Unloads the assets of every group that has no references left.
+     */
+    public void unloadReleased() {
+        for (Group group : released) {
+            if (group.references == 0 && group.loaded) {
+                group.loaded = false;
+                for (Entry entry : group.entries) {
+                    entry.unload();
+                }
+            }
+        }
+        released.clear();
+    }
+
+    /**
+     * Loads the group in the background, typically for the screen that is
+     * likely to be shown next. The group is held until another group is
+     * preloaded, so acquire it before then to keep it loaded.
+     * @param name
+     */
+    public void preload(String name) {
+        Group group = getGroup(name);
+        if (group == preloaded) {
+            return;
+        }
+
+        acquire(name);
+        if (preloaded != null) {
+            release(preloaded.name);
+        }
+        preloaded = group;
+    }
+
+    /**
+     * @param name
+     * @return True if every asset of the group has been loaded.
+     */
+    public boolean isLoaded(String name) {
+        Group group = groups.get(name);
+        if (group == null) {
+            return true;
+        }
+
+        for (Entry entry : group.entries) {
+            if (!assetManager.isLoaded(entry.path)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves an asset through the asset cache, which keeps it resident
+     * within the memory budget after its group is released.
+     * @param <T>
+     * @param path
+     * @param type
+     * @return
+     */
+    public <T> T get(String path, Class<T> type) {
+        return assetCache.get(path, type);
+    }
+
+    /**
+     * Continues loading queued assets for at most the given time.
+     * @param millis
+     * @return True if all queued assets have finished loading.
+     */
+    public boolean update(int millis) {
+        long start = TimeUtils.millis();
+        boolean pipelineFinished = assetPipeline.update(millis);
+        int remainingMillis = Math.max(1, millis - (int) TimeUtils.timeSinceMillis(start));
+        return assetManager.update(remainingMillis) && pipelineFinished;
+    }
+
+    /**
+     * @return True if nothing is waiting to be loaded.
+     */
+    public boolean isIdle() {
+        return assetPipeline.isFinished() && assetManager.getQueuedAssets() == 0;
+    }
+
+    private static class Group {
+        final String name;
+        final Array<Entry> entries = new Array<>();
+        int references;
+        boolean loaded;
+
+        Group(String name) {
+            this.name = name;
+        }
+    }
+
+    private class Entry {
+        final String path;
+        final String sourcePath;
+        final String atlasPath;
+        /**
+         * The type loaded through the asset manager or null if the asset is
+         * loaded through the pipeline.
+         */
+        final Class<?> type;
+
+        Entry(String path, String sourcePath, String atlasPath, Class<?> type) {
+            this.path = path;
+            this.sourcePath = sourcePath;
+            this.atlasPath = atlasPath;
+            this.type = type;
+        }
+
+        void load() {
+            if (type != null) {
+                assetManager.load(path, type);
+            } else if (atlasPath != null) {
+                assetPipeline.loadSkeleton(path, sourcePath, atlasPath, 1);
+            } else {
+                assetPipeline.loadSound(path);
+            }
+        }
+
+        void unload() {
+            if (type != null) {
+                assetManager.unload(path);
+            } else {
+                assetPipeline.unload(path);
+            }
+        }
+    }
+}
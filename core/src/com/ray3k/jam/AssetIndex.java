@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.TimeUtils;
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of the files packaged in the distribution JAR, grouped by folder. The
+ * index is built once, either from the asset manifest written by the desktop
+ * dist task or by reading the central directory of the JAR, so every folder
+ * lookup afterwards is a single map access instead of a full pass over the
+ * archive. Files are listed under every folder that contains them, matching
+ * the recursive behavior of the previous JAR walk.
+ */
+public class AssetIndex {
+    /**
+     * Internal path of the manifest generated by the desktop assetManifest
+     * task.
+     */
+    public static final String MANIFEST_PATH = "asset-manifest.json";
+    
+    private final ObjectMap<String, Array<FileHandle>> folders = new ObjectMap<>();
+    private final ObjectMap<Type, Array<Asset>> assets = new ObjectMap<>();
+    private boolean manifest;
+    private int entryCount;
+    private long scanMillis;
+    
+    /**
+     * Reads the asset manifest. Unlike a JAR scan, the resulting index also
+     * describes each asset's type and dependencies.
+     * @param manifest
+     * @return
+     */
+    public static AssetIndex read(FileHandle manifest) {
+        AssetIndex index = new AssetIndex();
+        index.manifest = true;
+        long start = TimeUtils.nanoTime();
+        
+        JsonValue root = new JsonReader().parse(manifest);
+        for (JsonValue value = root.getChild("assets"); value != null; value = value.next) {
+            Asset asset = new Asset();
+            asset.path = value.getString("path");
+            asset.type = Type.valueOf(value.getString("type").toUpperCase(Locale.ROOT));
+            asset.size = value.getLong("size");
+            asset.hash = value.getString("hash");
+            asset.dependencies = value.get("dependencies").asStringArray();
+            asset.binary = value.getString("binary", null);
+            
+            index.add(asset.path);
+            Array<Asset> typeAssets = index.assets.get(asset.type);
+            if (typeAssets == null) {
+                typeAssets = new Array<>();
+                index.assets.put(asset.type, typeAssets);
+            }
+            typeAssets.add(asset);
+        }
+        
+        index.scanMillis = TimeUtils.nanosToMillis(TimeUtils.timeSinceNanos(start));
+        return index;
+    }
+
+    /**
+     * Reads the central directory of the given JAR and indexes every file
+     * entry by its parent folders.
+     * @param jarFile
+     * @return
+     * @throws IOException
+     */
+    public static AssetIndex scan(File jarFile) throws IOException {
+        AssetIndex index = new AssetIndex();
+        long start = TimeUtils.nanoTime();
+
+        try (ZipFile zip = new ZipFile(jarFile)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory()) {
+                    index.add(entry.getName());
+                }
+            }
+        }
+
+        index.scanMillis = TimeUtils.nanosToMillis(TimeUtils.timeSinceNanos(start));
+        return index;
+    }
+
+    private void add(String name) {
+        entryCount++;
+        FileHandle fileHandle = null;
+
+        for (int slash = name.indexOf('/'); slash != -1; slash = name.indexOf('/', slash + 1)) {
+            if (fileHandle == null) {
+                fileHandle = Gdx.files.internal(name);
+            }
+
+            String folder = name.substring(0, slash);
+            Array<FileHandle> files = folders.get(folder);
+            if (files == null) {
+                files = new Array<>();
+                folders.put(folder, files);
+            }
+            files.add(fileHandle);
+        }
+    }
+
+    /**
+     * Returns every file located under the given folder. The returned array
+     * must not be modified.
+     * @param folder
+     * @return
+     */
+    public Array<FileHandle> list(String folder) {
+        Array<FileHandle> files = folders.get(folder);
+        return files == null ? new Array<FileHandle>() : files;
+    }
+
+    /**
+     * Returns every asset of the given type. Only indexes read from a manifest
+     * describe assets, scanned indexes always return an empty array. The
+     * returned array must not be modified.
+     * @param type
+     * @return
+     */
+    public Array<Asset> getAssets(Type type) {
+        Array<Asset> typeAssets = assets.get(type);
+        return typeAssets == null ? new Array<Asset>() : typeAssets;
+    }
+    
+    /**
+     * @return True if this index was read from a manifest and describes asset
+     * types and dependencies.
+     */
+    public boolean hasManifest() {
+        return manifest;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public long getScanMillis() {
+        return scanMillis;
+    }
+    
+    public static enum Type {
+        SKIN, ATLAS, SKELETON, MUSIC, SOUND, OTHER
+    }
+    
+    public static class Asset {
+        public String path;
+        public Type type;
+        public long size;
+        public String hash;
+        public String[] dependencies;
+        /**
+         * Path of the binary export of a JSON skeleton made at build time or
+         * null if there is none.
+         */
+        public String binary;
+    }
+}
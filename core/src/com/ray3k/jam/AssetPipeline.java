@@ -0,0 +1,457 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.TextureAtlasData;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.TextureAtlasData.Page;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ThreadUtils;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncTask;
+import com.esotericsoftware.spine.SkeletonData;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Loads texture atlases, skeletons and sounds on a pool of worker threads. The
+ * {@link AssetManager} decodes one asset at a time on a single thread, while
+ * this pipeline decodes every asset whose dependencies are ready concurrently.
+ * Work that needs the GL context, such as uploading atlas pages, is handed
+ * back to the render thread and performed in batches by {@link #update()}.
+ * Finished assets are added to the asset manager so they are retrieved with
+ * {@link AssetManager#get(String, Class)} like any other asset. Assets are
+ * reference counted; every load must be matched by a call to
+ * {@link #unload(String)} to release them. The pipeline holds a single
+ * reference in the asset manager for each asset it has finished, including
+ * assets that were already loaded by someone else.
+ */
+public class AssetPipeline implements Disposable {
+    private final AssetManager assetManager;
+    private final AsyncExecutor executor;
+    private final ObjectMap<String, Task> tasks = new ObjectMap<>();
+    private final ConcurrentLinkedQueue<Task> decoded = new ConcurrentLinkedQueue<>();
+    private int uploadsPerUpdate = 4;
+    private int finishedCount;
+
+    public AssetPipeline(AssetManager assetManager, int threads) {
+        this.assetManager = assetManager;
+        executor = new AsyncExecutor(threads, "AssetPipeline");
+    }
+
+    public void loadAtlas(String path) {
+        if (!reference(path)) {
+            queue(new AtlasTask(path));
+        }
+    }
+
+    /**
+     * Queues a skeleton. Its atlas is queued as well and the skeleton is
+     * decoded as soon as the atlas has been uploaded.
+     * @param path
+     * @param atlasPath
+     * @param scale
+     */
+    public void loadSkeleton(String path, String atlasPath, float scale) {
+        loadSkeleton(path, path, atlasPath, scale);
+    }
+
+    /**
+     * Queues a skeleton that is parsed from a different file than the path it
+     * is stored under, typically a binary export of a JSON skeleton.
+     * @param path
+     * @param sourcePath
+     * @param atlasPath
+     * @param scale
+     */
+    public void loadSkeleton(String path, String sourcePath, String atlasPath, float scale) {
+        if (!reference(path)) {
+            loadAtlas(atlasPath);
+            queue(new SkeletonTask(path, sourcePath, tasks.get(atlasPath), scale));
+        }
+    }
+
+    public void loadSound(String path) {
+        if (!reference(path)) {
+            queue(new SoundTask(path));
+        }
+    }
+
+    /**
+     * Adds a reference to an asset that is already queued or loaded.
+     * @param path
+     * @return False if the asset is not known to the pipeline.
+     */
+    private boolean reference(String path) {
+        Task task = tasks.get(path);
+        if (task == null) {
+            return false;
+        }
+        task.references++;
+        return true;
+    }
+
+    /**
+     * Removes a reference to an asset loaded through this pipeline. Once no
+     * references remain the asset is unloaded from the asset manager and its
+     * dependency is released as well. Assets that are still decoding are
+     * discarded as soon as the worker is done with them.
+     * @param path
+     */
+    public void unload(String path) {
+        Task task = tasks.get(path);
+        if (task == null || --task.references > 0) {
+            return;
+        }
+
+        tasks.remove(path);
+        if (task.finished) {
+            finishedCount--;
+            assetManager.unload(path);
+        } else {
+            task.unloaded = true;
+        }
+
+        if (task.dependency != null) {
+            unload(task.dependency.path);
+        }
+    }
+
+    /**
+     * @param path
+     * @return True if the asset is known to this pipeline, whether or not it
+     * has finished loading.
+     */
+    public boolean contains(String path) {
+        return tasks.containsKey(path);
+    }
+
+    private void queue(Task task) {
+        tasks.put(task.path, task);
+        if (task.dependency == null) {
+            submit(task);
+        } else if (task.dependency.finished) {
+            //the pipeline's reference keeps the dependency loaded
+            submit(task);
+        } else {
+            task.dependency.dependents.add(task);
+        }
+    }
+
+    private void submit(final Task task) {
+        if (task.unloaded) {
+            return;
+        }
+
+        if (assetManager.isLoaded(task.path)) {
+            //reference it right away so it can't be unloaded before it is adopted
+            assetManager.setReferenceCount(task.path, assetManager.getReferenceCount(task.path) + 1);
+            task.preloaded = true;
+            decoded.add(task);
+            return;
+        }
+
+        executor.submit(new AsyncTask<Void>() {
+            @Override
+            public Void call() throws Exception {
+                try {
+                    task.decode(Gdx.files.internal(task.path));
+                } catch (Throwable t) {
+                    task.error = t;
+                }
+                decoded.add(task);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Finishes up to {@link #getUploadsPerUpdate()} decoded assets on the
+     * render thread and releases the assets that depend on them to the
+     * workers. Must be called from the render thread.
+     * @return True if every queued asset has finished loading.
+     */
+    public boolean update() {
+        for (int i = 0; i < uploadsPerUpdate; i++) {
+            if (!finishNext()) {
+                break;
+            }
+        }
+
+        return isFinished();
+    }
+
+    /**
+     * Finishes decoded assets on the render thread until the time budget is
+     * spent or no decoded asset is waiting. At least one asset is finished if
+     * available. Must be called from the render thread.
+     * @param millis
+     * @return True if every queued asset has finished loading.
+     */
+    public boolean update(int millis) {
+        long endTime = TimeUtils.millis() + millis;
+        while (finishNext()) {
+            if (TimeUtils.millis() >= endTime) {
+                break;
+            }
+        }
+
+        return isFinished();
+    }
+
+    /**
+     * @return False if no decoded asset was waiting.
+     */
+    private boolean finishNext() {
+        Task task = decoded.poll();
+        if (task == null) {
+            return false;
+        }
+
+        if (task.unloaded) {
+            if (task.preloaded) {
+                assetManager.unload(task.path);
+            } else if (task.error == null) {
+                task.discard();
+            }
+            task.dependents.clear();
+            return true;
+        }
+
+        if (task.error != null) {
+            throw new GdxRuntimeException("Couldn't load asset: " + task.path, task.error);
+        }
+
+        if (task.preloaded) {
+            task.adopt(assetManager);
+        } else {
+            task.finish(assetManager);
+        }
+        task.finished = true;
+        finishedCount++;
+
+        for (Task dependent : task.dependents) {
+            submit(dependent);
+        }
+        task.dependents.clear();
+        return true;
+    }
+
+    /**
+     * Finishes decoded assets on the render thread until the asset has
+     * finished loading, waiting for the workers as needed. Must be called from
+     * the render thread.
+     * @param path An asset queued in this pipeline.
+     */
+    public void finishLoading(String path) {
+        Task task = tasks.get(path);
+        if (task == null) {
+            throw new GdxRuntimeException("Asset not queued: " + path);
+        }
+
+        while (!task.finished) {
+            if (!finishNext()) {
+                ThreadUtils.yield();
+            }
+        }
+    }
+
+    public boolean isFinished() {
+        return finishedCount == tasks.size;
+    }
+
+    public float getProgress() {
+        return tasks.size == 0 ? 1f : (float) finishedCount / tasks.size;
+    }
+
+    public int getUploadsPerUpdate() {
+        return uploadsPerUpdate;
+    }
+
+    /**
+     * @param uploadsPerUpdate The number of decoded assets finished on the
+     * render thread per call to {@link #update()}.
+     */
+    public void setUploadsPerUpdate(int uploadsPerUpdate) {
+        this.uploadsPerUpdate = uploadsPerUpdate;
+    }
+
+    @Override
+    public void dispose() {
+        executor.dispose();
+    }
+
+    private static abstract class Task {
+        final String path;
+        final Task dependency;
+        final Array<Task> dependents = new Array<>();
+        volatile Throwable error;
+        int references = 1;
+        boolean preloaded;
+        boolean finished;
+        boolean unloaded;
+
+        Task(String path, Task dependency) {
+            this.path = path;
+            this.dependency = dependency;
+        }
+
+        /**
+         * Performs the CPU bound part of loading on a worker thread.
+         */
+        abstract void decode(FileHandle file) throws Exception;
+
+        /**
+         * Performs the GL bound part of loading on the render thread.
+         */
+        abstract void finish(AssetManager assetManager);
+
+        /**
+         * Picks up the asset when it was already loaded by the asset manager.
+         */
+        void adopt(AssetManager assetManager) {
+        }
+
+        /**
+         * Releases the decoded data of an asset that was unloaded before it
+         * finished loading.
+         */
+        void discard() {
+        }
+    }
+
+    private static class AtlasTask extends Task {
+        TextureAtlasData data;
+        TextureAtlas atlas;
+        final Array<TextureData> textureData = new Array<>();
+
+        AtlasTask(String path) {
+            super(path, null);
+        }
+
+        @Override
+        void decode(FileHandle file) {
+            data = new TextureAtlasData(file, file.parent(), false);
+            for (Page page : data.getPages()) {
+                TextureData pageData = TextureData.Factory.loadFromFile(page.textureFile, page.format, page.useMipMaps);
+                if (!pageData.isPrepared()) {
+                    pageData.prepare();
+                }
+                textureData.add(pageData);
+            }
+        }
+
+        @Override
+        void finish(AssetManager assetManager) {
+            Array<Page> pages = data.getPages();
+            for (int i = 0; i < pages.size; i++) {
+                pages.get(i).texture = new Texture(textureData.get(i));
+            }
+            textureData.clear();
+
+            atlas = new TextureAtlas(data);
+            data = null;
+            assetManager.addAsset(path, TextureAtlas.class, atlas);
+        }
+
+        @Override
+        void adopt(AssetManager assetManager) {
+            atlas = assetManager.get(path, TextureAtlas.class);
+        }
+
+        @Override
+        void discard() {
+            for (TextureData pageData : textureData) {
+                if (pageData.getType() == TextureData.TextureDataType.Pixmap) {
+                    Pixmap pixmap = pageData.consumePixmap();
+                    if (pageData.disposePixmap()) {
+                        pixmap.dispose();
+                    }
+                }
+            }
+            textureData.clear();
+            data = null;
+        }
+    }
+
+    private static class SkeletonTask extends Task {
+        final String sourcePath;
+        final float scale;
+        SkeletonData skeletonData;
+
+        SkeletonTask(String path, String sourcePath, Task atlasTask, float scale) {
+            super(path, atlasTask);
+            this.sourcePath = sourcePath;
+            this.scale = scale;
+        }
+
+        @Override
+        void decode(FileHandle file) {
+            AtlasTask atlasTask = (AtlasTask) dependency;
+            skeletonData = SkeletonDataLoader.readSkeletonData(Gdx.files.internal(sourcePath), atlasTask.atlas, scale);
+            skeletonData.setName(file.nameWithoutExtension());
+        }
+
+        @Override
+        void finish(AssetManager assetManager) {
+            assetManager.addAsset(path, SkeletonData.class, skeletonData);
+            skeletonData = null;
+        }
+    }
+
+    private static class SoundTask extends Task {
+        Sound sound;
+
+        SoundTask(String path) {
+            super(path, null);
+        }
+
+        @Override
+        void decode(FileHandle file) {
+            sound = Gdx.audio.newSound(file);
+        }
+
+        @Override
+        void discard() {
+            sound.dispose();
+            sound = null;
+        }
+
+        @Override
+        void finish(AssetManager assetManager) {
+            assetManager.addAsset(path, Sound.class, sound);
+            sound = null;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ShortArray;
+import com.esotericsoftware.spine.Animation;
+import com.esotericsoftware.spine.Animation.ColorTimeline;
+import com.esotericsoftware.spine.Animation.MixBlend;
+import com.esotericsoftware.spine.Animation.MixDirection;
+import com.esotericsoftware.spine.Animation.Timeline;
+import com.esotericsoftware.spine.Animation.TwoColorTimeline;
+import com.esotericsoftware.spine.BlendMode;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.Slot;
+import com.esotericsoftware.spine.attachments.Attachment;
+import com.esotericsoftware.spine.attachments.ClippingAttachment;
+import com.esotericsoftware.spine.utils.TwoColorPolygonBatch;
+
+/**
+ * The animations of a {@link SkeletonData} sampled at a fixed frame rate into
+ * the vertices {@link com.esotericsoftware.spine.SkeletonRenderer} would
+ * produce for a {@link TwoColorPolygonBatch}. Replaying a frame copies the
+ * vertices to the batch, skipping the pose, mesh deformation and vertex
+ * colors entirely. This trades memory for CPU time, so animations are baked
+ * until the memory cap is reached and the rest are left to the live renderer.
+ * <p>
+ * Vertices are baked in the skeleton's local space with the default skin, the
+ * skeleton color as white and the setup slot colors, except for the slot
+ * colors the animation keys, which are baked as animated. Replaying only
+ * applies position and scale. Animations that show a clipping attachment are
+ * not baked.
+ */
+public class BakedSkeleton {
+    private static final int VERTEX_SIZE = SkeletonVertices.VERTEX_SIZE;
+    /**
+     * Ints per draw: texture, blend mode, vertex offset, vertex count, triangle
+     * offset, triangle count.
+     */
+    private static final int DRAW_SIZE = 6;
+    private final SkeletonData skeletonData;
+    private final float fps;
+    private final boolean premultipliedAlpha;
+    private final ObjectMap<Animation, BakedAnimation> animations = new ObjectMap<>();
+    private final Array<Texture> textures = new Array<>();
+    /**
+     * Triangles are the same on every frame, so they are stored once per
+     * attachment.
+     */
+    private final ShortArray triangles = new ShortArray();
+    private final ObjectIntMap<Attachment> triangleOffsets = new ObjectIntMap<>();
+    private float[] scratch = new float[4 * 1024];
+    private long bytes;
+
+    /**
+     * Bakes every animation of the skeleton that fits in the memory cap.
+     * @param skeletonData
+     * @param fps The frame rate the animations are sampled at.
+     * @param premultipliedAlpha Must match the skeleton renderer.
+     * @param memoryCap The most bytes used by the baked frames.
+     */
+    public BakedSkeleton(SkeletonData skeletonData, float fps, boolean premultipliedAlpha, long memoryCap) {
+        this.skeletonData = skeletonData;
+        this.fps = fps;
+        this.premultipliedAlpha = premultipliedAlpha;
+
+        Skeleton skeleton = new Skeleton(skeletonData);
+        for (Animation animation : skeletonData.getAnimations()) {
+            BakedAnimation baked = bake(skeleton, animation);
+            if (baked == null) {
+                continue;
+            }
+
+            long animationBytes = baked.getBytes();
+            if (bytes + animationBytes > memoryCap) {
+                Gdx.app.log(getClass().getName(), "Memory cap reached, not baking " + skeletonData.getName() + "/" + animation.getName());
+                continue;
+            }
+            bytes += animationBytes;
+            animations.put(animation, baked);
+        }
+    }
+
+    private BakedAnimation bake(Skeleton skeleton, Animation animation) {
+        int frames = (int) Math.ceil(animation.getDuration() * fps) + 1;
+        BakedAnimation baked = new BakedAnimation(frames, skeleton.getSlots().size);
+        for (Timeline timeline : animation.getTimelines()) {
+            if (timeline instanceof ColorTimeline) {
+                baked.colorKeyed[((ColorTimeline) timeline).getSlotIndex()] = true;
+            } else if (timeline instanceof TwoColorTimeline) {
+                baked.colorKeyed[((TwoColorTimeline) timeline).getSlotIndex()] = true;
+            }
+        }
+        FloatArray vertices = new FloatArray();
+        IntArray draws = new IntArray();
+
+        for (int frame = 0; frame < frames; frame++) {
+            float time = Math.min(frame / fps, animation.getDuration());
+            skeleton.setToSetupPose();
+            animation.apply(skeleton, time, time, false, null, 1, MixBlend.setup, MixDirection.in);
+            skeleton.updateWorldTransform();
+
+            baked.frameDraws[frame] = draws.size / DRAW_SIZE;
+            for (Slot slot : skeleton.getDrawOrder()) {
+                Attachment attachment = slot.getAttachment();
+                if (attachment instanceof ClippingAttachment) {
+                    return null;
+                }
+
+                int length = SkeletonVertices.getVerticesLength(attachment);
+                if (length > scratch.length) {
+                    //replaying copies a draw at a time through the same buffer, so it only grows
+                    scratch = new float[MathUtils.nextPowerOfTwo(length)];
+                }
+                int count = SkeletonVertices.compute(skeleton, slot, premultipliedAlpha, scratch);
+                if (count == 0) {
+                    continue;
+                }
+                addDraw(vertices, draws, slot, attachment, count);
+            }
+        }
+        baked.frameDraws[frames] = draws.size / DRAW_SIZE;
+        baked.vertices = vertices.toArray();
+        baked.draws = draws.toArray();
+        return baked;
+    }
+
+    private void addDraw(FloatArray vertices, IntArray draws, Slot slot, Attachment attachment, int count) {
+        Texture texture = SkeletonVertices.getTexture(attachment);
+        int textureIndex = textures.indexOf(texture, true);
+        if (textureIndex == -1) {
+            textureIndex = textures.size;
+            textures.add(texture);
+        }
+
+        int triangleOffset = triangleOffsets.get(attachment, -1);
+        if (triangleOffset == -1) {
+            triangleOffset = triangles.size;
+            triangles.addAll(SkeletonVertices.getTriangles(attachment));
+            triangleOffsets.put(attachment, triangleOffset);
+        }
+
+        draws.add(textureIndex);
+        draws.add(slot.getData().getBlendMode().ordinal());
+        draws.add(vertices.size);
+        draws.add(count);
+        draws.add(triangleOffset);
+        draws.add(SkeletonVertices.getTriangles(attachment).length);
+        vertices.addAll(scratch, 0, count);
+    }
+
+    /**
+     * @param animation
+     * @return The baked animation or null if it was not baked.
+     */
+    public BakedAnimation get(Animation animation) {
+        return animations.get(animation);
+    }
+
+    /**
+     * Draws a baked frame. The batch must have been started.
+     * @param batch
+     * @param animation
+     * @param time The animation time, which must already be wrapped for
+     * looping animations.
+     * @param x
+     * @param y
+     * @param scaleX
+     * @param scaleY
+     */
+    public void draw(TwoColorPolygonBatch batch, BakedAnimation animation, float time, float x, float y, float scaleX, float scaleY) {
+        int frame = Math.max(0, Math.min((int) (time * fps), animation.getFrameCount() - 1));
+        float[] vertices = animation.vertices;
+        int[] draws = animation.draws;
+        BlendMode[] blendModes = BlendMode.values;
+        BlendMode blendMode = null;
+
+        for (int d = animation.frameDraws[frame] * DRAW_SIZE, end = animation.frameDraws[frame + 1] * DRAW_SIZE; d < end; d += DRAW_SIZE) {
+            BlendMode slotBlendMode = blendModes[draws[d + 1]];
+            if (slotBlendMode != blendMode) {
+                blendMode = slotBlendMode;
+                batch.setBlendFunction(blendMode.getSource(premultipliedAlpha), blendMode.getDest());
+            }
+
+            int offset = draws[d + 2];
+            int count = draws[d + 3];
+            System.arraycopy(vertices, offset, scratch, 0, count);
+            for (int v = 0; v < count; v += VERTEX_SIZE) {
+                scratch[v] = x + scratch[v] * scaleX;
+                scratch[v + 1] = y + scratch[v + 1] * scaleY;
+            }
+            batch.draw(textures.get(draws[d]), scratch, 0, count, triangles.items, draws[d + 4], draws[d + 5]);
+        }
+    }
+
+    /**
+     * Adds a baked frame to the queue as one group.
+     * @param queue
+     * @param animation
+     * @param time The animation time, which must already be wrapped for
+     * looping animations.
+     * @param x
+     * @param y
+     * @param scaleX
+     * @param scaleY
+     */
+    public void draw(RenderQueue queue, BakedAnimation animation, float time, float x, float y, float scaleX, float scaleY) {
+        int frame = Math.max(0, Math.min((int) (time * fps), animation.getFrameCount() - 1));
+        float[] vertices = animation.vertices;
+        int[] draws = animation.draws;
+        BlendMode[] blendModes = BlendMode.values;
+
+        queue.beginGroup();
+        for (int d = animation.frameDraws[frame] * DRAW_SIZE, end = animation.frameDraws[frame + 1] * DRAW_SIZE; d < end; d += DRAW_SIZE) {
+            BlendMode blendMode = blendModes[draws[d + 1]];
+            queue.setBlendFunction(blendMode.getSource(premultipliedAlpha), blendMode.getDest());
+
+            int offset = draws[d + 2];
+            int count = draws[d + 3];
+            System.arraycopy(vertices, offset, scratch, 0, count);
+            for (int v = 0; v < count; v += VERTEX_SIZE) {
+                scratch[v] = x + scratch[v] * scaleX;
+                scratch[v + 1] = y + scratch[v + 1] * scaleY;
+            }
+            queue.draw(textures.get(draws[d]), scratch, 0, count, triangles.items, draws[d + 4], draws[d + 5]);
+        }
+        queue.endGroup();
+    }
+
+    public SkeletonData getSkeletonData() {
+        return skeletonData;
+    }
+
+    public float getFps() {
+        return fps;
+    }
+
+    /**
+     * @return The bytes used by the baked frames.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * The frames of one animation. Draws index into the packed vertices, so a
+     * frame is replayed without any allocation.
+     */
+    public static class BakedAnimation {
+        /**
+         * The first draw of every frame, with one extra entry for the end.
+         */
+        final int[] frameDraws;
+        /**
+         * The slots whose colors are keyed, by slot index.
+         */
+        final boolean[] colorKeyed;
+        float[] vertices;
+        int[] draws;
+
+        BakedAnimation(int frames, int slots) {
+            frameDraws = new int[frames + 1];
+            colorKeyed = new boolean[slots];
+        }
+
+        /**
+         * @param slotIndex
+         * @return True if the animation keys the slot's color, so it was baked
+         * with the animated color instead of the setup color.
+         */
+        public boolean isColorKeyed(int slotIndex) {
+            return colorKeyed[slotIndex];
+        }
+
+        public int getFrameCount() {
+            return frameDraws.length - 1;
+        }
+
+        public long getBytes() {
+            return vertices.length * 4L + draws.length * 4L + frameDraws.length * 4L;
+        }
+    }
+}
@@ -5,32 +5,39 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Preferences;
 import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
-import com.badlogic.gdx.audio.Music;
-import com.badlogic.gdx.audio.Sound;
 import com.badlogic.gdx.files.FileHandle;
-import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.utils.Array;
 import com.esotericsoftware.spine.SkeletonData;
 import com.esotericsoftware.spine.SkeletonRenderer;
 import com.esotericsoftware.spine.utils.TwoColorPolygonBatch;
-import com.ray3k.jam.SkeletonDataLoader.SkeletonDataLoaderParameter;
+import com.ray3k.jam.AssetIndex.Asset;
 import com.ray3k.jam.screens.LoadScreen;
+import java.io.File;
 import java.io.IOException;
-import java.net.URL;
+import java.net.URISyntaxException;
 import java.security.CodeSource;
 import java.util.Locale;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 public class Core extends Game {
     public static final String GAME_NAME = "Ray3K Jam";
     public static final String VERSION = "1";
+    private static final int BACKGROUND_LOADING_MILLIS = 2;
     
     public TwoColorPolygonBatch batch;
+    public RenderQueue renderQueue;
+    public RuntimeAtlas runtimeAtlas;
+    public GradientBatch gradientBatch;
     public AssetManager assetManager;
+    public AssetPipeline assetPipeline;
+    public AssetGroups assetGroups;
+    public AssetCache assetCache;
+    public MusicPlayer musicPlayer;
+    public SoundManager soundManager;
+    public FrameProfiler frameProfiler;
     public SkeletonRenderer skeletonRenderer;
     public Preferences preferences;
     public DesktopWorker desktopWorker;
+    private AssetIndex assetIndex;
     
     @Override
     public void create() {
@@ -38,6 +45,14 @@ public class Core extends Game {
         skeletonRenderer = new SkeletonRenderer();
         skeletonRenderer.setPremultipliedAlpha(true);
         preferences = Gdx.app.getPreferences(GAME_NAME);
+        runtimeAtlas = new RuntimeAtlas(preferences.getInteger("atlasPageSize", 1024));
+        //gradients sample the atlas' white pixel so they share a texture with the packed UI drawables
+        gradientBatch = new GradientBatch(runtimeAtlas.getWhiteRegion());
+        renderQueue = new RenderQueue();
+        frameProfiler = new FrameProfiler(batch, renderQueue);
+        if (preferences.contains("profilerOutput")) {
+            frameProfiler.startRecording(Gdx.files.local(preferences.getString("profilerOutput")));
+        }
         
         addAssets();
         
@@ -47,79 +62,165 @@ public class Core extends Game {
     private void addAssets() {
         assetManager = new AssetManager(new InternalFileHandleResolver());
         assetManager.setLoader(SkeletonData.class, new SkeletonDataLoader(assetManager.getFileHandleResolver()));
+        int threads = preferences.getInteger("loadingThreads", Runtime.getRuntime().availableProcessors());
+        assetPipeline = new AssetPipeline(assetManager, Math.max(1, threads));
+        long budgetMegabytes = preferences.getInteger("assetBudget", 1024);
+        assetCache = new AssetCache(assetManager, assetPipeline, budgetMegabytes * 1024 * 1024);
+        assetGroups = new AssetGroups(assetManager, assetPipeline, assetCache);
+        //music is streamed by the player instead of being loaded with the groups
+        musicPlayer = new MusicPlayer();
+        soundManager = new SoundManager(assetManager, assetCache, preferences.getInteger("soundVoices", 12));
         
-        for (FileHandle fileHandle : getInternalFiles("ui")) {
-            if (fileHandle.extension().toLowerCase(Locale.ROOT).equals("json")) {
-                assetManager.load(fileHandle.path(), Skin.class);
-                break;
+        AssetIndex index = getAssetIndex();
+        if (index != null && index.hasManifest()) {
+            addAssets(index);
+        } else {
+            for (FileHandle fileHandle : getInternalFiles("ui")) {
+                if (fileHandle.extension().toLowerCase(Locale.ROOT).equals("json")) {
+                    assetGroups.addSkin(AssetGroups.COMMON, fileHandle.path());
+                    break;
+                }
+            }
+
+            for (FileHandle atlasHandle : getInternalFiles("textures")) {
+                if (atlasHandle.extension().toLowerCase(Locale.ROOT).equals("atlas")) {
+                    for (FileHandle fileHandle : getInternalFiles("animations")) {
+                        assetGroups.addSkeleton(getGroupName("animations", fileHandle.path()), fileHandle.path(), fileHandle.path(), atlasHandle.path());
+                    }
+                    break;
+                }
+            }
+
+            for (FileHandle fileHandle : getInternalFiles("bgm")) {
+                musicPlayer.addTrack(getGroupName("bgm", fileHandle.path()), fileHandle.path());
+            }
+
+            for (FileHandle fileHandle : getInternalFiles("sfx")) {
+                assetGroups.addSound(getGroupName("sfx", fileHandle.path()), fileHandle.path());
             }
         }
         
-        for (FileHandle atlasHandle : getInternalFiles("textures")) {
-            if (atlasHandle.extension().toLowerCase(Locale.ROOT).equals("atlas")) {
-                SkeletonDataLoaderParameter parameter = new SkeletonDataLoaderParameter(atlasHandle.path());
-                for (FileHandle fileHandle : getInternalFiles("animations")) {
-                    assetManager.load(fileHandle.path(), SkeletonData.class, parameter);
-                }
-                break;
+        //the title screen's assets are loaded along with the common ones behind the load screen
+        assetGroups.acquire(AssetGroups.COMMON);
+        assetGroups.preload(AssetGroups.TITLE);
+        //tracks directly inside the music folder play until a screen has its own
+        musicPlayer.play(AssetGroups.COMMON);
+    }
+    
+    /**
+     * Fills the asset groups straight from the build-time manifest, skipping
+     * directory listing entirely.
+     * @param index
+     */
+    private void addAssets(AssetIndex index) {
+        Array<Asset> skins = index.getAssets(AssetIndex.Type.SKIN);
+        if (skins.size > 0) {
+            assetGroups.addSkin(AssetGroups.COMMON, skins.first().path);
+        }
+        
+        for (Asset asset : index.getAssets(AssetIndex.Type.SKELETON)) {
+            if (asset.dependencies.length > 0) {
+                String source = asset.binary == null ? asset.path : asset.binary;
+                assetGroups.addSkeleton(getGroupName("animations", asset.path), asset.path, source, asset.dependencies[0]);
             }
         }
         
-        for (FileHandle fileHandle : getInternalFiles("bgm")) {
-            assetManager.load(fileHandle.path(), Music.class);
+        for (Asset asset : index.getAssets(AssetIndex.Type.MUSIC)) {
+            musicPlayer.addTrack(getGroupName("bgm", asset.path), asset.path);
         }
         
-        for (FileHandle fileHandle : getInternalFiles("sfx")) {
-            assetManager.load(fileHandle.path(), Sound.class);
+        for (Asset asset : index.getAssets(AssetIndex.Type.SOUND)) {
+            assetGroups.addSound(getGroupName("sfx", asset.path), asset.path);
         }
     }
     
+    /**
+     * @param folder
+     * @param path
+     * @return The name of the subfolder of the asset folder containing the
+     * file or {@link AssetGroups#COMMON} if the file is directly inside it.
+     */
+    private String getGroupName(String folder, String path) {
+        int start = folder.length() + 1;
+        int slash = path.indexOf('/', start);
+        return slash == -1 ? AssetGroups.COMMON : path.substring(start, slash);
+    }
+    
     private Array<FileHandle> getInternalFiles(String internalFolder) {
         final Array<FileHandle> assetFiles = new Array<>();
         //list files if running from IDE
-        assetFiles.addAll(Gdx.files.internal(internalFolder).list());
+        for (FileHandle fileHandle : Gdx.files.internal(internalFolder).list()) {
+            if (fileHandle.isDirectory()) {
+                assetFiles.addAll(getInternalFiles(fileHandle.path()));
+            } else {
+                assetFiles.add(fileHandle);
+            }
+        }
         
         //list files if running from JAR
         if (assetFiles.size == 0) {
-            ZipInputStream zip = null;
+            AssetIndex index = getAssetIndex();
+            if (index != null) {
+                assetFiles.addAll(index.list(internalFolder));
+            }
+        }
+        
+        return assetFiles;
+    }
+    
+    /**
+     * Builds the asset index on first use so that every subsequent folder
+     * lookup avoids another pass over the archive. The manifest written by the
+     * dist task is preferred, otherwise the JAR's central directory is read.
+     * @return The index or null if there is no manifest and the code source is
+     * not a JAR.
+     */
+    private AssetIndex getAssetIndex() {
+        if (assetIndex == null) {
+            FileHandle manifest = Gdx.files.internal(AssetIndex.MANIFEST_PATH);
+            if (manifest.exists()) {
+                assetIndex = AssetIndex.read(manifest);
+                Gdx.app.log(getClass().getName(), "Read " + assetIndex.getEntryCount() + " manifest entries in " + assetIndex.getScanMillis() + "ms");
+                return assetIndex;
+            }
+            
             try {
                 CodeSource src = getClass().getProtectionDomain().getCodeSource();
-                URL jar = src.getLocation();
-                zip = new ZipInputStream(jar.openStream());
-                while (true) {
-                    ZipEntry e = zip.getNextEntry();
-                    if (e == null) {
-                        break;
-                    }
-                    final java.lang.String name = e.getName();
-                    if (name.matches(internalFolder + "\\/.+")) {
-                        com.badlogic.gdx.files.FileHandle fileHandle = Gdx.files.internal(name);
-                        assetFiles.add(fileHandle);
-                        //internal files don't report if it's a directory, remove parent directories
-                        assetFiles.removeValue(fileHandle.parent(), false);
-                    }
+                File jar = new File(src.getLocation().toURI());
+                if (jar.isFile()) {
+                    assetIndex = AssetIndex.scan(jar);
+                    Gdx.app.log(getClass().getName(), "Indexed " + assetIndex.getEntryCount() + " JAR entries in " + assetIndex.getScanMillis() + "ms");
                 }
-            } catch (IOException ex) {
+            } catch (IOException | URISyntaxException ex) {
                 Gdx.app.error(getClass().getName(), "Error reading assets from JAR", ex);
-            } finally {
-                try {
-                    zip.close();
-                } catch (IOException ex) {
-                    Gdx.app.error(getClass().getName(), "Error reading assets from JAR", ex);
-                }
             }
         }
-        
-        return assetFiles;
+        return assetIndex;
     }
 
     @Override
     public void render() {
+        //keep preloading groups in the background once the load screen is done
+        if (!(screen instanceof LoadScreen) && !assetGroups.isIdle()) {
+            assetGroups.update(BACKGROUND_LOADING_MILLIS);
+        }
+        musicPlayer.update(Gdx.graphics.getDeltaTime());
+        //drawables packed during the last frame are uploaded before they are drawn
+        runtimeAtlas.update();
+        frameProfiler.begin();
         super.render();
+        frameProfiler.end();
+        //sounds triggered during this frame start together
+        soundManager.update();
     }
 
     @Override
     public void dispose() {
-        
+        frameProfiler.dispose();
+        soundManager.stopAll();
+        musicPlayer.dispose();
+        assetPipeline.dispose();
+        assetManager.dispose();
+        runtimeAtlas.dispose();
     }
 }
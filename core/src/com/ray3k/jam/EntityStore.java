@@ -0,0 +1,240 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import java.util.Arrays;
+
+/**
+ * Stores entities as parallel arrays of primitive components, indexed
+ * densely from 0 to {@link #size()}. Systems iterate the arrays directly in
+ * tight loops. Entities are created and removed in constant time; removing
+ * moves the last entity into the freed slot, so dense indices are not stable
+ * and entities must be referenced by the handle returned by
+ * {@link #create(float, float)}. Handles carry a generation, so a handle of a
+ * removed entity never resolves to an entity created later in its place.
+ * <p>
+ * The component arrays are replaced when the store grows, so retrieve them
+ * again after creating entities.
+ */
+public class EntityStore {
+    public static final int NONE = -1;
+    private static final int INDEX_BITS = 22;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (32 - INDEX_BITS - 1)) - 1;
+    private float[] x;
+    private float[] y;
+    private float[] velocityX;
+    private float[] velocityY;
+    private int[] flags;
+    /**
+     * The handle of the entity at each dense index.
+     */
+    private int[] handles;
+    /**
+     * The dense index of each entity id, or NONE for free ids.
+     */
+    private int[] indices;
+    private int[] generations;
+    /**
+     * Entity ids that are free to reuse.
+     */
+    private int[] freeIds;
+    private int freeCount;
+    private int idCount;
+    private int size;
+
+    public EntityStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        x = new float[capacity];
+        y = new float[capacity];
+        velocityX = new float[capacity];
+        velocityY = new float[capacity];
+        flags = new int[capacity];
+        handles = new int[capacity];
+        indices = new int[capacity];
+        generations = new int[capacity];
+        freeIds = new int[capacity];
+    }
+
+    /**
+     * Adds an entity at rest at the given position.
+     * @param x
+     * @param y
+     * @return The entity's handle.
+     */
+    public int create(float x, float y) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            if (idCount > INDEX_MASK) {
+                throw new IllegalStateException("Too many entities: " + idCount);
+            }
+            id = idCount++;
+            if (id == indices.length) {
+                int capacity = indices.length * 2;
+                indices = Arrays.copyOf(indices, capacity);
+                generations = Arrays.copyOf(generations, capacity);
+                freeIds = Arrays.copyOf(freeIds, capacity);
+            }
+        }
+
+        if (size == this.x.length) {
+            grow(size * 2);
+        }
+
+        int handle = generations[id] << INDEX_BITS | id;
+        int index = size++;
+        indices[id] = index;
+        handles[index] = handle;
+        this.x[index] = x;
+        this.y[index] = y;
+        velocityX[index] = 0;
+        velocityY[index] = 0;
+        flags[index] = 0;
+        return handle;
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        handles = Arrays.copyOf(handles, capacity);
+    }
+
+    /**
+     * Removes the entity, moving the last entity into its slot.
+     * @param handle
+     * @return False if the entity had already been removed.
+     */
+    public boolean remove(int handle) {
+        int index = indexOf(handle);
+        if (index == NONE) {
+            return false;
+        }
+
+        int id = handle & INDEX_MASK;
+        int last = --size;
+        if (index != last) {
+            x[index] = x[last];
+            y[index] = y[last];
+            velocityX[index] = velocityX[last];
+            velocityY[index] = velocityY[last];
+            flags[index] = flags[last];
+            handles[index] = handles[last];
+            indices[handles[index] & INDEX_MASK] = index;
+        }
+
+        indices[id] = NONE;
+        generations[id] = (generations[id] + 1) & GENERATION_MASK;
+        freeIds[freeCount++] = id;
+        return true;
+    }
+
+    /**
+     * @param handle
+     * @return The dense index of the entity or {@link #NONE} if it has been
+     * removed.
+     */
+    public int indexOf(int handle) {
+        int id = handle & INDEX_MASK;
+        if (handle < 0 || id >= idCount || generations[id] != handle >>> INDEX_BITS) {
+            return NONE;
+        }
+        return indices[id];
+    }
+
+    public boolean contains(int handle) {
+        return indexOf(handle) != NONE;
+    }
+
+    /**
+     * Removes every entity. Handles given out before are invalidated.
+     */
+    public void clear() {
+        while (size > 0) {
+            remove(handles[size - 1]);
+        }
+    }
+
+    /**
+     * Makes this store an exact copy of another, including handles.
+     * @param other
+     */
+    public void set(EntityStore other) {
+        if (x.length < other.size) {
+            grow(other.x.length);
+        }
+        System.arraycopy(other.x, 0, x, 0, other.size);
+        System.arraycopy(other.y, 0, y, 0, other.size);
+        System.arraycopy(other.velocityX, 0, velocityX, 0, other.size);
+        System.arraycopy(other.velocityY, 0, velocityY, 0, other.size);
+        System.arraycopy(other.flags, 0, flags, 0, other.size);
+        System.arraycopy(other.handles, 0, handles, 0, other.size);
+        if (indices.length < other.idCount) {
+            indices = new int[other.indices.length];
+            generations = new int[other.indices.length];
+            freeIds = new int[other.indices.length];
+        }
+        System.arraycopy(other.indices, 0, indices, 0, other.idCount);
+        System.arraycopy(other.generations, 0, generations, 0, other.idCount);
+        System.arraycopy(other.freeIds, 0, freeIds, 0, other.freeCount);
+        freeCount = other.freeCount;
+        idCount = other.idCount;
+        size = other.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public float[] getX() {
+        return x;
+    }
+
+    public float[] getY() {
+        return y;
+    }
+
+    public float[] getVelocityX() {
+        return velocityX;
+    }
+
+    public float[] getVelocityY() {
+        return velocityY;
+    }
+
+    public int[] getFlags() {
+        return flags;
+    }
+
+    /**
+     * @return The handle of the entity at each dense index.
+     */
+    public int[] getHandles() {
+        return handles;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.TimeUtils;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Advances a simulation in steps of a fixed length regardless of the render
+ * frame rate. Time is accumulated every frame and spent in whole steps, with
+ * at most {@link #getMaxSteps()} steps per frame; time beyond that is dropped
+ * so a slow frame can't make the following frames slower still. The fraction
+ * of a step left over is returned by {@link #getAlpha()} for rendering the
+ * state interpolated between {@link #getPrevious()} and {@link #getCurrent()}.
+ * <p>
+ * In threaded mode the steps run on their own thread at the fixed rate. Each
+ * finished step is copied into a snapshot that the render thread picks up on
+ * its next update, so the simulation and the renderer never touch the same
+ * state. The render thread keeps the two newest snapshots, which are always
+ * a single step apart, so the alpha between them is measured in steps.
+ * @param <T> The simulation state.
+ */
+public class FixedTimestep<T> implements Disposable {
+    public interface Simulation<T> {
+        T createState();
+
+        /**
+         * Advances the state by one step. In threaded mode this is called on
+         * the simulation thread.
+         * @param state
+         * @param timeStep
+         */
+        void step(T state, float timeStep);
+
+        void copy(T from, T to);
+    }
+
+    private final Simulation<T> simulation;
+    private final float timeStep;
+    private final long stepNanos;
+    private int maxSteps = 5;
+    private float accumulator;
+    private long step;
+    private float alpha;
+    private Snapshot<T> previous;
+    private Snapshot<T> current;
+    private Snapshot<T> working;
+    private final ConcurrentLinkedQueue<Snapshot<T>> published = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Snapshot<T>> free = new ConcurrentLinkedQueue<>();
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * @param simulation
+     * @param stepsPerSecond
+     */
+    public FixedTimestep(Simulation<T> simulation, float stepsPerSecond) {
+        this.simulation = simulation;
+        timeStep = 1f / stepsPerSecond;
+        stepNanos = (long) (1000000000.0 / stepsPerSecond);
+        previous = new Snapshot<>(simulation.createState());
+        current = new Snapshot<>(simulation.createState());
+    }
+
+    /**
+     * Advances the simulation by the frame's time, or picks up the newest
+     * snapshot in threaded mode. Call once per frame before rendering.
+     * @param delta
+     */
+    public void update(float delta) {
+        if (thread != null) {
+            //every step is published, so keeping the two newest keeps consecutive steps
+            Snapshot<T> snapshot;
+            while ((snapshot = published.poll()) != null) {
+                free.add(previous);
+                previous = current;
+                current = snapshot;
+            }
+            //the current snapshot is shown a step late, interpolated towards it from the previous one
+            alpha = Math.min(1f, (float) (TimeUtils.nanoTime() - current.nanos) / stepNanos);
+            step = current.step;
+            return;
+        }
+
+        accumulator += delta;
+        int steps = 0;
+        while (accumulator >= timeStep && steps < maxSteps) {
+            simulation.copy(current.state, previous.state);
+            simulation.step(current.state, timeStep);
+            accumulator -= timeStep;
+            steps++;
+            step++;
+        }
+        if (accumulator >= timeStep) {
+            accumulator %= timeStep;
+        }
+        alpha = accumulator / timeStep;
+    }
+
+    /**
+     * Moves the simulation to its own thread, continuing from the current
+     * state.
+     */
+    public void start() {
+        if (thread != null) {
+            return;
+        }
+
+        working = new Snapshot<>(simulation.createState());
+        simulation.copy(current.state, working.state);
+        working.step = step;
+        running = true;
+        thread = new Thread(this::run, "FixedTimestep");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation thread and continues on the render thread from the
+     * newest snapshot.
+     */
+    public void stop() {
+        if (thread == null) {
+            return;
+        }
+
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        update(0);
+        thread = null;
+        working = null;
+        accumulator = 0;
+    }
+
+    private void run() {
+        long nextStep = TimeUtils.nanoTime();
+        while (running) {
+            long time = TimeUtils.nanoTime();
+            if (time < nextStep) {
+                try {
+                    Thread.sleep((nextStep - time) / 1000000, (int) ((nextStep - time) % 1000000));
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                continue;
+            }
+
+            //drop the steps that can't be caught up with, like the single threaded loop does
+            if (time - nextStep > stepNanos * maxSteps) {
+                nextStep = time;
+            }
+            nextStep += stepNanos;
+
+            try {
+                simulation.step(working.state, timeStep);
+            } catch (RuntimeException ex) {
+                Gdx.app.error(getClass().getName(), "Error in simulation step", ex);
+                running = false;
+                return;
+            }
+            working.step++;
+            publish();
+        }
+    }
+
+    private void publish() {
+        Snapshot<T> snapshot = free.poll();
+        if (snapshot == null) {
+            snapshot = new Snapshot<>(simulation.createState());
+        }
+        simulation.copy(working.state, snapshot.state);
+        snapshot.step = working.step;
+        snapshot.nanos = TimeUtils.nanoTime();
+        published.add(snapshot);
+    }
+
+    /**
+     * @return The state before the last step. Only read it on the render
+     * thread.
+     */
+    public T getPrevious() {
+        return previous.state;
+    }
+
+    /**
+     * @return The state after the last step. Only read it on the render
+     * thread.
+     */
+    public T getCurrent() {
+        return current.state;
+    }
+
+    /**
+     * @return How far rendering is between the previous and the current
+     * state, from 0 to 1.
+     */
+    public float getAlpha() {
+        return alpha;
+    }
+
+    /**
+     * @return The number of steps taken by the current state.
+     */
+    public long getStep() {
+        return step;
+    }
+
+    public float getTimeStep() {
+        return timeStep;
+    }
+
+    public int getMaxSteps() {
+        return maxSteps;
+    }
+
+    /**
+     * @param maxSteps The most steps taken to catch up in a single frame.
+     */
+    public void setMaxSteps(int maxSteps) {
+        this.maxSteps = maxSteps;
+    }
+
+    public boolean isThreaded() {
+        return thread != null;
+    }
+
+    @Override
+    public void dispose() {
+        stop();
+    }
+
+    private static class Snapshot<T> {
+        final T state;
+        long step;
+        long nanos;
+
+        Snapshot(T state) {
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.StreamUtils;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.esotericsoftware.spine.utils.TwoColorPolygonBatch;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures every frame rendered by {@link Core}. The time spent in the active
+ * screen, the number of batch flushes, heap usage and garbage collections are
+ * recorded for each frame and the frame times of the last
+ * {@link #HISTORY_SIZE} frames are kept for percentiles. While the overlay is
+ * visible or a recording is running, draw calls, vertices, texture bindings
+ * and shader switches are counted with a {@link GLProfiler} as well. Press F3
+ * to toggle the overlay. Recordings write one line per frame as CSV, or as
+ * JSON lines if the file name ends with 'jsonl'.
+ */
+public class FrameProfiler implements Disposable {
+    public static final int HISTORY_SIZE = 600;
+    private static final float OVERLAY_REFRESH_TIME = .5f;
+    private final TwoColorPolygonBatch batch;
+    private final RenderQueue renderQueue;
+    private final GLProfiler glProfiler;
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> garbageCollectorBeans = ManagementFactory.getGarbageCollectorMXBeans();
+    private final long[] history = new long[HISTORY_SIZE];
+    private final long[] sorted = new long[HISTORY_SIZE];
+    private int historyIndex;
+    private int historySize;
+    private long frame;
+    private long frameStart;
+    private int startRenderCalls;
+    private long startFlushesSaved;
+    private int flushesSaved;
+    private long frameNanos;
+    private int renderCalls;
+    private int drawCalls;
+    private int vertices;
+    private int textureBindings;
+    private int shaderSwitches;
+    private long heapBytes;
+    private long gcCount;
+    private long gcMillis;
+    private long totalGcCount;
+    private long totalGcMillis;
+    private boolean overlayVisible;
+    private BitmapFont font;
+    private final Matrix4 overlayProjection = new Matrix4();
+    private final Matrix4 savedProjection = new Matrix4();
+    private String overlayText = "";
+    private float overlayTime = OVERLAY_REFRESH_TIME;
+    private Writer writer;
+    private boolean json;
+
+    public FrameProfiler(TwoColorPolygonBatch batch, RenderQueue renderQueue) {
+        this.batch = batch;
+        this.renderQueue = renderQueue;
+        glProfiler = new GLProfiler(Gdx.graphics);
+        sampleGarbageCollection();
+    }
+
+    /**
+     * Starts measuring a frame. Call before the screen is rendered.
+     */
+    public void begin() {
+        frameStart = TimeUtils.nanoTime();
+        startRenderCalls = batch.totalRenderCalls;
+        startFlushesSaved = renderQueue.getTotalFlushesSaved();
+        if (glProfiler.isEnabled()) {
+            glProfiler.reset();
+        }
+    }
+
+    /**
+     * Finishes measuring the frame, records it and draws the overlay if it is
+     * visible. Call after the screen is rendered.
+     */
+    public void end() {
+        frameNanos = TimeUtils.nanoTime() - frameStart;
+        renderCalls = batch.totalRenderCalls - startRenderCalls;
+        flushesSaved = (int) (renderQueue.getTotalFlushesSaved() - startFlushesSaved);
+        if (glProfiler.isEnabled()) {
+            drawCalls = glProfiler.getDrawCalls();
+            vertices = (int) glProfiler.getVertexCount().total;
+            textureBindings = glProfiler.getTextureBindings();
+            shaderSwitches = glProfiler.getShaderSwitches();
+        }
+        heapBytes = memoryBean.getHeapMemoryUsage().getUsed();
+        sampleGarbageCollection();
+        frame++;
+
+        history[historyIndex] = frameNanos;
+        historyIndex = (historyIndex + 1) % HISTORY_SIZE;
+        historySize = Math.min(historySize + 1, HISTORY_SIZE);
+
+        if (writer != null) {
+            write();
+        }
+
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F3)) {
+            setOverlayVisible(!overlayVisible);
+        }
+        if (overlayVisible) {
+            drawOverlay();
+        }
+    }
+
+    private void sampleGarbageCollection() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : garbageCollectorBeans) {
+            count += Math.max(0, bean.getCollectionCount());
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        gcCount = count - totalGcCount;
+        gcMillis = millis - totalGcMillis;
+        totalGcCount = count;
+        totalGcMillis = millis;
+    }
+
+    private void drawOverlay() {
+        overlayTime += Gdx.graphics.getDeltaTime();
+        if (overlayTime >= OVERLAY_REFRESH_TIME) {
+            overlayTime = 0;
+            overlayText = String.format(Locale.ROOT, "fps %d  frame %.2fms%np50 %.2fms  p99 %.2fms  max %.2fms%n"
+                    + "flushes %d (%d saved)  draw calls %d  vertices %d%ntexture binds %d  shader switches %d%nheap %dMB  gc %d (%dms)",
+                    Gdx.graphics.getFramesPerSecond(), frameNanos / 1000000f,
+                    getPercentile(.5f) / 1000000f, getPercentile(.99f) / 1000000f, getPercentile(1f) / 1000000f,
+                    renderCalls, flushesSaved, drawCalls, vertices, textureBindings, shaderSwitches,
+                    heapBytes / (1024 * 1024), totalGcCount, totalGcMillis);
+        }
+
+        if (font == null) {
+            font = new BitmapFont();
+        }
+        //the batch's projection belongs to the screen, so it is restored afterward
+        savedProjection.set(batch.getProjectionMatrix());
+        batch.setProjectionMatrix(overlayProjection.setToOrtho2D(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight()));
+        batch.begin();
+        font.draw(batch, overlayText, 10, Gdx.graphics.getHeight() - 10);
+        batch.end();
+        batch.setProjectionMatrix(savedProjection);
+    }
+
+    /**
+     * @param percentile Between 0 and 1, where 1 gives the longest frame.
+     * @return The frame time in nanoseconds at the percentile of the recent
+     * frames.
+     */
+    public long getPercentile(float percentile) {
+        if (historySize == 0) {
+            return 0;
+        }
+        System.arraycopy(history, 0, sorted, 0, historySize);
+        Arrays.sort(sorted, 0, historySize);
+        return sorted[Math.min(historySize - 1, (int) (historySize * percentile))];
+    }
+
+    /**
+     * Writes a line for every following frame to the file.
+     * @param file A file ending with 'jsonl' for JSON lines, CSV otherwise.
+     */
+    public void startRecording(FileHandle file) {
+        stopRecording();
+        json = file.extension().toLowerCase(Locale.ROOT).equals("jsonl");
+        writer = file.writer(false, "UTF-8");
+        if (!json) {
+            writeLine("frame,frameMillis,renderCalls,drawCalls,vertices,textureBindings,shaderSwitches,heapBytes,gcCount,gcMillis");
+        }
+        updateGLProfiler();
+    }
+
+    public void stopRecording() {
+        if (writer != null) {
+            StreamUtils.closeQuietly(writer);
+            writer = null;
+            updateGLProfiler();
+        }
+    }
+
+    private void write() {
+        if (json) {
+            writeLine(String.format(Locale.ROOT, "{\"frame\":%d,\"frameMillis\":%.4f,\"renderCalls\":%d,\"drawCalls\":%d,\"vertices\":%d,"
+                    + "\"textureBindings\":%d,\"shaderSwitches\":%d,\"heapBytes\":%d,\"gcCount\":%d,\"gcMillis\":%d}",
+                    frame, frameNanos / 1000000f, renderCalls, drawCalls, vertices, textureBindings, shaderSwitches, heapBytes, gcCount, gcMillis));
+        } else {
+            writeLine(String.format(Locale.ROOT, "%d,%.4f,%d,%d,%d,%d,%d,%d,%d,%d",
+                    frame, frameNanos / 1000000f, renderCalls, drawCalls, vertices, textureBindings, shaderSwitches, heapBytes, gcCount, gcMillis));
+        }
+    }
+
+    private void writeLine(String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException ex) {
+            Gdx.app.error(getClass().getName(), "Error writing frame profile", ex);
+            StreamUtils.closeQuietly(writer);
+            writer = null;
+        }
+    }
+
+    public boolean isOverlayVisible() {
+        return overlayVisible;
+    }
+
+    public void setOverlayVisible(boolean overlayVisible) {
+        this.overlayVisible = overlayVisible;
+        updateGLProfiler();
+    }
+
+    /**
+     * Only intercepts GL calls while someone is looking at the results and
+     * there is a GL context to intercept.
+     */
+    private void updateGLProfiler() {
+        if ((overlayVisible || writer != null) && Gdx.graphics.getGL20() != null) {
+            glProfiler.enable();
+        } else {
+            glProfiler.disable();
+        }
+    }
+
+    /**
+     * @return The time spent rendering the last frame in nanoseconds.
+     */
+    public long getFrameNanos() {
+        return frameNanos;
+    }
+
+    /**
+     * @return The number of times the batch flushed during the last frame.
+     */
+    public int getRenderCalls() {
+        return renderCalls;
+    }
+
+    /**
+     * @return The number of flushes the render queue avoided during the last
+     * frame.
+     */
+    public int getFlushesSaved() {
+        return flushesSaved;
+    }
+
+    public long getFrame() {
+        return frame;
+    }
+
+    @Override
+    public void dispose() {
+        stopRecording();
+        glProfiler.disable();
+        if (font != null) {
+            font.dispose();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+
+/**
+ * A linear gradient with any number of color stops. Stops are placed between 0
+ * and 1 along the direction of the gradient. The area before the first stop
+ * and after the last stop is filled with the color of that stop. Gradients are
+ * drawn with {@link GradientBatch}.
+ */
+public class Gradient {
+    public enum Direction {
+        /**
+         * From the left edge to the right edge.
+         */
+        HORIZONTAL(1f, 0f),
+        /**
+         * From the bottom edge to the top edge.
+         */
+        VERTICAL(0f, 1f),
+        /**
+         * From the bottom left corner to the top right corner.
+         */
+        DIAGONAL(.5f, .5f);
+        
+        /**
+         * The weights of the horizontal and vertical position within the
+         * drawn area that give the position along the gradient.
+         */
+        final float weightX;
+        final float weightY;
+
+        Direction(float weightX, float weightY) {
+            this.weightX = weightX;
+            this.weightY = weightY;
+        }
+    }
+    
+    private Direction direction;
+    private final FloatArray positions = new FloatArray();
+    private final Array<Color> colors = new Array<>();
+
+    public Gradient(Direction direction) {
+        this.direction = direction;
+    }
+
+    /**
+     * Creates a gradient with evenly spaced stops.
+     * @param direction
+     * @param colors
+     */
+    public Gradient(Direction direction, Color... colors) {
+        this.direction = direction;
+        for (int i = 0; i < colors.length; i++) {
+            addStop(colors.length == 1 ? 0f : (float) i / (colors.length - 1), colors[i]);
+        }
+    }
+
+    /**
+     * Adds a stop, keeping the stops ordered by position.
+     * @param position
+     * @param color
+     * @return This gradient for chaining.
+     */
+    public Gradient addStop(float position, Color color) {
+        int index = 0;
+        while (index < positions.size && positions.get(index) <= position) {
+            index++;
+        }
+        positions.insert(index, position);
+        colors.insert(index, new Color(color));
+        return this;
+    }
+
+    public void clearStops() {
+        positions.clear();
+        colors.clear();
+    }
+
+    public int getStopCount() {
+        return positions.size;
+    }
+
+    public float getPosition(int index) {
+        return positions.get(index);
+    }
+
+    /**
+     * @param index
+     * @return The color of the stop, which may be modified.
+     */
+    public Color getColor(int index) {
+        return colors.get(index);
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public void setDirection(Direction direction) {
+        this.direction = direction;
+    }
+}
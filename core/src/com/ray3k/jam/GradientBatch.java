@@ -0,0 +1,223 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import java.util.Arrays;
+
+/**
+ * Collects gradient quads into a single vertex array that is submitted to the
+ * batch in one call. Every quad samples the center of the same solid white
+ * region, so when that region is taken from the UI atlas, gradients share
+ * the texture of the surrounding UI and never force the batch to flush. Each
+ * band between two stops becomes one quad for horizontal and vertical
+ * gradients and up to two quads for diagonal gradients, with colors
+ * interpolated exactly along the gradient.
+ */
+public class GradientBatch {
+    private static final int QUAD_FLOATS = 20;
+    /**
+     * The largest number of quads handed to the batch at once. Batches that
+     * don't split large vertex arrays can hold at least this many.
+     */
+    private static final int MAX_QUADS_PER_DRAW = 256;
+    private final TextureRegion region;
+    private final float u;
+    private final float v;
+    private final Color temp = new Color();
+    private float[] vertices = new float[QUAD_FLOATS * 64];
+    private int count;
+    /**
+     * Scratch polygons in normalized coordinates, at most six vertices remain
+     * after clipping a rectangle against a band.
+     */
+    private final float[] polygon = new float[16];
+    private final float[] clipped = new float[16];
+
+    /**
+     * @param region A solid white region, typically a single pixel in the UI
+     * atlas.
+     */
+    public GradientBatch(TextureRegion region) {
+        this.region = region;
+        u = (region.getU() + region.getU2()) / 2f;
+        v = (region.getV() + region.getV2()) / 2f;
+    }
+
+    public void add(Gradient gradient, float x, float y, float width, float height) {
+        add(gradient, x, y, width, height, Color.WHITE);
+    }
+
+    /**
+     * Adds the quads of a gradient filling the given area.
+     * @param gradient
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @param tint Multiplied with every stop color.
+     */
+    public void add(Gradient gradient, float x, float y, float width, float height, Color tint) {
+        int stops = gradient.getStopCount();
+        if (stops == 0) {
+            return;
+        }
+
+        //fill before the first stop and after the last with their colors
+        if (gradient.getPosition(0) > 0f) {
+            addBand(gradient, 0f, gradient.getPosition(0), gradient.getColor(0), gradient.getColor(0), x, y, width, height, tint);
+        }
+        for (int i = 0; i < stops - 1; i++) {
+            addBand(gradient, gradient.getPosition(i), gradient.getPosition(i + 1), gradient.getColor(i), gradient.getColor(i + 1), x, y, width, height, tint);
+        }
+        if (gradient.getPosition(stops - 1) < 1f) {
+            addBand(gradient, gradient.getPosition(stops - 1), 1f, gradient.getColor(stops - 1), gradient.getColor(stops - 1), x, y, width, height, tint);
+        }
+    }
+
+    private void addBand(Gradient gradient, float start, float end, Color startColor, Color endColor, float x, float y, float width, float height, Color tint) {
+        if (end <= start) {
+            return;
+        }
+
+        Gradient.Direction direction = gradient.getDirection();
+        polygon[0] = 0f;
+        polygon[1] = 0f;
+        polygon[2] = 0f;
+        polygon[3] = 1f;
+        polygon[4] = 1f;
+        polygon[5] = 1f;
+        polygon[6] = 1f;
+        polygon[7] = 0f;
+        int vertexCount = clip(polygon, 4, clipped, direction, start, 1f);
+        vertexCount = clip(clipped, vertexCount, polygon, direction, end, -1f);
+        if (vertexCount < 3) {
+            return;
+        }
+
+        //fan the convex polygon into quads, repeating the last vertex of a lone triangle
+        for (int i = 1; i < vertexCount - 1; i += 2) {
+            ensureCapacity(count + QUAD_FLOATS);
+            addVertex(0, direction, start, end, startColor, endColor, x, y, width, height, tint);
+            addVertex(i, direction, start, end, startColor, endColor, x, y, width, height, tint);
+            addVertex(i + 1, direction, start, end, startColor, endColor, x, y, width, height, tint);
+            addVertex(Math.min(i + 2, vertexCount - 1), direction, start, end, startColor, endColor, x, y, width, height, tint);
+        }
+    }
+
+    private void addVertex(int index, Gradient.Direction direction, float start, float end, Color startColor, Color endColor, float x, float y, float width, float height, Color tint) {
+        float px = polygon[index * 2];
+        float py = polygon[index * 2 + 1];
+        float progress = (px * direction.weightX + py * direction.weightY - start) / (end - start);
+        temp.set(startColor).lerp(endColor, Math.max(0f, Math.min(progress, 1f))).mul(tint);
+
+        vertices[count++] = x + px * width;
+        vertices[count++] = y + py * height;
+        vertices[count++] = temp.toFloatBits();
+        vertices[count++] = u;
+        vertices[count++] = v;
+    }
+
+    /**
+     * Clips a convex polygon against one side of a line of constant gradient
+     * position.
+     * @param in
+     * @param inCount
+     * @param out
+     * @param direction
+     * @param position
+     * @param side 1 to keep the part after the position, -1 to keep the part
+     * before it.
+     * @return The number of vertices written to out.
+     */
+    private int clip(float[] in, int inCount, float[] out, Gradient.Direction direction, float position, float side) {
+        int outCount = 0;
+        for (int i = 0; i < inCount; i++) {
+            int j = (i + 1) % inCount;
+            float ax = in[i * 2], ay = in[i * 2 + 1];
+            float bx = in[j * 2], by = in[j * 2 + 1];
+            float a = side * (ax * direction.weightX + ay * direction.weightY - position);
+            float b = side * (bx * direction.weightX + by * direction.weightY - position);
+
+            if (a >= 0f) {
+                out[outCount * 2] = ax;
+                out[outCount * 2 + 1] = ay;
+                outCount++;
+            }
+            if (a >= 0f != b >= 0f) {
+                float t = a / (a - b);
+                out[outCount * 2] = ax + (bx - ax) * t;
+                out[outCount * 2 + 1] = ay + (by - ay) * t;
+                outCount++;
+            }
+        }
+        return outCount;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > vertices.length) {
+            vertices = Arrays.copyOf(vertices, Math.max(size, vertices.length * 2));
+        }
+    }
+
+    /**
+     * Submits every collected quad to the batch and clears them.
+     * @param batch
+     */
+    public void flush(Batch batch) {
+        for (int offset = 0; offset < count; offset += MAX_QUADS_PER_DRAW * QUAD_FLOATS) {
+            batch.draw(region.getTexture(), vertices, offset, Math.min(count - offset, MAX_QUADS_PER_DRAW * QUAD_FLOATS));
+        }
+        count = 0;
+    }
+
+    /**
+     * Draws a single gradient right away, tinted by the batch color. Suitable
+     * for drawing gradients from a drawable while keeping the draw order.
+     * Quads queued with add are submitted first, in the same flush.
+     * @param batch
+     * @param gradient
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    public void draw(Batch batch, Gradient gradient, float x, float y, float width, float height) {
+        add(gradient, x, y, width, height, batch.getColor());
+        flush(batch);
+    }
+
+    /**
+     * @return The number of quads waiting to be submitted.
+     */
+    public int getQuadCount() {
+        return count / QUAD_FLOATS;
+    }
+
+    public TextureRegion getRegion() {
+        return region;
+    }
+}
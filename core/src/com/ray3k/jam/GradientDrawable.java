@@ -28,14 +28,31 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.scenes.scene2d.utils.BaseDrawable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 
+/**
+ * Fills its area with a color per corner. When given a {@link Gradient} and a
+ * {@link GradientBatch}, the gradient is drawn through that batch instead, so
+ * gradients with any number of stops can be used in scene2d UI.
+ */
 public class GradientDrawable extends BaseDrawable {
     private final Color color1 = new Color(Color.WHITE);
     private final Color color2 = new Color(Color.WHITE);
     private final Color color3 = new Color(Color.WHITE);
     private final Color color4 = new Color(Color.WHITE);
     private final Color temp = new Color();
+    /**
+     * The colors and batch tint the packed vertex colors were computed from.
+     */
+    private final Color packedColor1 = new Color();
+    private final Color packedColor2 = new Color();
+    private final Color packedColor3 = new Color();
+    private final Color packedColor4 = new Color();
+    private final Color packedTint = new Color();
+    private boolean colorsPacked;
     private TextureRegion region;
+    private Gradient gradient;
+    private GradientBatch gradientBatch;
     private float paddingLeft;
     private float paddingRight;
     private float paddingTop;
@@ -48,44 +65,94 @@ public class GradientDrawable extends BaseDrawable {
         initialize();
     }
 
+    /**
+     * @param gradientBatch Provides the white region the gradient is drawn
+     * with.
+     * @param gradient
+     */
+    public GradientDrawable(GradientBatch gradientBatch, Gradient gradient) {
+        this(gradientBatch.getRegion());
+        this.gradientBatch = gradientBatch;
+        this.gradient = gradient;
+    }
+
     private void initialize() {
         setMinWidth(region.getRegionWidth());
         setMinHeight(region.getRegionHeight());
     }
     
+    /**
+     * Packed colors and texture coordinates are kept in the vertex array
+     * between calls and only recomputed when the colors, the batch color or
+     * the region have changed.
+     */
     @Override
     public void draw(Batch batch, float x, float y, float width, float height) {
-        int i = 0;
-        verts[i++] = x + paddingLeft;
-        verts[i++] = y + paddingBottom;
-        temp.set(color1);
-        verts[i++] = temp.mul(batch.getColor()).toFloatBits();
-        verts[i++] = region.getU();
-        verts[i++] = region.getV2();
+        if (gradient != null) {
+            gradientBatch.draw(batch, gradient, x + paddingLeft, y + paddingBottom,
+                    width - paddingLeft - paddingRight, height - paddingBottom - paddingTop);
+            return;
+        }
         
-        verts[i++] = x + paddingLeft;
-        verts[i++] = y + height - paddingTop;
-        temp.set(color2);
-        verts[i++] = temp.mul(batch.getColor()).toFloatBits();
-        verts[i++] = region.getU();
-        verts[i++] = region.getV();
+        Color tint = batch.getColor();
+        boolean colorsChanged = !colorsPacked;
+        colorsChanged |= store(packedTint, tint);
+        colorsChanged |= store(packedColor1, color1);
+        colorsChanged |= store(packedColor2, color2);
+        colorsChanged |= store(packedColor3, color3);
+        colorsChanged |= store(packedColor4, color4);
+        if (colorsChanged) {
+            verts[2] = temp.set(color1).mul(tint).toFloatBits();
+            verts[7] = temp.set(color2).mul(tint).toFloatBits();
+            verts[12] = temp.set(color3).mul(tint).toFloatBits();
+            verts[17] = temp.set(color4).mul(tint).toFloatBits();
+            colorsPacked = true;
+        }
         
-        verts[i++] = x + width - paddingRight;
-        verts[i++] = y + height - paddingTop;
-        temp.set(color3);
-        verts[i++] = temp.mul(batch.getColor()).toFloatBits();
-        verts[i++] = region.getU2();
-        verts[i++] = region.getV();
+        float u = region.getU();
+        float v = region.getV();
+        float u2 = region.getU2();
+        float v2 = region.getV2();
+        if (verts[3] != u || verts[9] != v || verts[13] != u2 || verts[4] != v2) {
+            verts[3] = u;
+            verts[4] = v2;
+            verts[8] = u;
+            verts[9] = v;
+            verts[13] = u2;
+            verts[14] = v;
+            verts[18] = u2;
+            verts[19] = v2;
+        }
         
-        verts[i++] = x + width - paddingRight;
-        verts[i++] = y + paddingBottom;
-        temp.set(color4);
-        verts[i++] = temp.mul(batch.getColor()).toFloatBits();
-        verts[i++] = region.getU2();
-        verts[i++] = region.getV2();
+        float left = x + paddingLeft;
+        float bottom = y + paddingBottom;
+        float right = x + width - paddingRight;
+        float top = y + height - paddingTop;
+        verts[0] = left;
+        verts[1] = bottom;
+        verts[5] = left;
+        verts[6] = top;
+        verts[10] = right;
+        verts[11] = top;
+        verts[15] = right;
+        verts[16] = bottom;
         
         batch.draw(region.getTexture(), verts, 0, verts.length);
     }
+    
+    /**
+     * Copies the color if it differs from the stored one.
+     * @param stored
+     * @param color
+     * @return True if the color changed.
+     */
+    private static boolean store(Color stored, Color color) {
+        if (stored.r == color.r && stored.g == color.g && stored.b == color.b && stored.a == color.a) {
+            return false;
+        }
+        stored.set(color);
+        return true;
+    }
 
     public Color getColor1() {
         return color1;
@@ -103,6 +170,27 @@ public class GradientDrawable extends BaseDrawable {
         return color4;
     }
 
+    /**
+     * @return The gradient drawn instead of the corner colors or null.
+     */
+    public Gradient getGradient() {
+        return gradient;
+    }
+
+    /**
+     * @param gradient The gradient to draw instead of the corner colors or
+     * null to draw the corner colors.
+     * @param gradientBatch The batch the gradient is drawn with, ignored when
+     * the gradient is null.
+     */
+    public void setGradient(Gradient gradient, GradientBatch gradientBatch) {
+        if (gradient != null && gradientBatch == null) {
+            throw new GdxRuntimeException("A gradient batch is required to draw a gradient.");
+        }
+        this.gradient = gradient;
+        this.gradientBatch = gradient == null ? null : gradientBatch;
+    }
+
     public TextureRegion getRegion() {
         return region;
     }
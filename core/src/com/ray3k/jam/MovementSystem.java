@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+/**
+ * Moves every entity of an {@link EntityStore} by its velocity and bounces it
+ * off the edges of the world.
+ */
+public class MovementSystem {
+    private float width;
+    private float height;
+
+    public MovementSystem(float width, float height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public void update(EntityStore store, float delta) {
+        float[] x = store.getX();
+        float[] y = store.getY();
+        float[] velocityX = store.getVelocityX();
+        float[] velocityY = store.getVelocityY();
+        for (int i = 0, n = store.size(); i < n; i++) {
+            float newX = x[i] + velocityX[i] * delta;
+            float newY = y[i] + velocityY[i] * delta;
+            if (newX < 0 || newX > width) {
+                velocityX[i] = -velocityX[i];
+                newX = Math.max(0, Math.min(newX, width));
+            }
+            if (newY < 0 || newY > height) {
+                velocityY[i] = -velocityY[i];
+                newY = Math.max(0, Math.min(newY, height));
+            }
+            x[i] = newX;
+            y[i] = newY;
+        }
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+
+    public void setSize(float width, float height) {
+        this.width = width;
+        this.height = height;
+    }
+}
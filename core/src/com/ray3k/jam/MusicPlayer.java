@@ -0,0 +1,285 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.audio.Music;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+
+/**
+ * Streams background music from named playlists. Tracks are not loaded up
+ * front; at most the current track and the one after it are open at any time.
+ * The next track is opened on a background thread while the current one plays
+ * so it can start without a hitch when the current track completes. Once it is
+ * open, its stream buffers are filled by starting and pausing it silently, so
+ * at the transition it only resumes. The transition still waits for the
+ * completion of the current track to be reported on the render thread, so it
+ * is not sample accurate gapless playback. Switching
+ * playlists crossfades from the current track to the first track of the new
+ * playlist. A track's decoder is closed as soon as it finishes or fades out.
+ */
+public class MusicPlayer implements Disposable {
+    private final AsyncExecutor executor = new AsyncExecutor(1, "MusicPlayer");
+    private final ObjectMap<String, Array<String>> playlists = new ObjectMap<>();
+    /**
+     * Tracks that were still opening when they were no longer needed. They
+     * are closed as soon as they are done.
+     */
+    private final Array<AsyncResult<Music>> abandoned = new Array<>();
+    private Array<String> playlist;
+    /**
+     * The index in the playlist of the track opened last.
+     */
+    private int playlistIndex;
+    private Track current;
+    private Track next;
+    private Music fading;
+    private float fadeTime;
+    private float fadeDuration = 2f;
+    private float volume = 1f;
+    private boolean crossfade;
+
+    /**
+     * Adds a track to a playlist. The file is not opened until it is about to
+     * be played.
+     * @param name
+     * @param path
+     */
+    public void addTrack(String name, String path) {
+        Array<String> tracks = playlists.get(name);
+        if (tracks == null) {
+            tracks = new Array<>();
+            playlists.put(name, tracks);
+        }
+        tracks.add(path);
+    }
+
+    /**
+     * Plays the tracks of the playlist in order, crossfading from the current
+     * track once the first one is ready. Playlists without tracks leave the
+     * current music playing.
+     * @param name
+     */
+    public void play(String name) {
+        Array<String> tracks = playlists.get(name);
+        if (tracks == null || tracks.size == 0 || tracks == playlist) {
+            return;
+        }
+
+        playlist = tracks;
+        abandon(next);
+        next = open(0);
+        crossfade = current != null;
+    }
+
+    /**
+     * Stops the music and closes every open track.
+     */
+    public void stop() {
+        playlist = null;
+        abandon(next);
+        next = null;
+        if (current != null) {
+            current.music.dispose();
+            current = null;
+        }
+        if (fading != null) {
+            fading.dispose();
+            fading = null;
+        }
+    }
+
+    /**
+     * Advances fades and starts the next track once the current one has
+     * completed. Must be called from the render thread every frame.
+     * @param delta
+     */
+    public void update(float delta) {
+        if (fading != null) {
+            fadeTime += delta;
+            float progress = Math.min(fadeTime / fadeDuration, 1f);
+            fading.setVolume(volume * (1f - progress));
+            //a short track may complete while it is still fading in
+            if (current != null) {
+                current.music.setVolume(volume * progress);
+            }
+            if (progress >= 1f) {
+                fading.dispose();
+                fading = null;
+            }
+        }
+
+        if (current != null && current.completed) {
+            current.music.dispose();
+            current = null;
+        }
+
+        if (next != null && next.result.isDone() && (current == null || crossfade)) {
+            Track track = next;
+            next = null;
+            crossfade = false;
+            start(track);
+        }
+
+        //look ahead only once the crossfade is over so no more than two tracks are open
+        if (next == null && fading == null && current != null && playlist != null && playlist.size > 1) {
+            next = open((playlistIndex + 1) % playlist.size);
+        }
+        if (next != null && !next.primed && next.result.isDone() && current != null && !crossfade) {
+            prime(next);
+        }
+
+        for (int i = abandoned.size - 1; i >= 0; i--) {
+            AsyncResult<Music> result = abandoned.get(i);
+            if (result.isDone()) {
+                abandoned.removeIndex(i);
+                Music music = get(result);
+                if (music != null) {
+                    music.dispose();
+                }
+            }
+        }
+    }
+
+    private Track open(int index) {
+        final String path = playlist.get(index);
+        playlistIndex = index;
+        AsyncResult<Music> result = executor.submit(() -> Gdx.audio.newMusic(Gdx.files.internal(path)));
+        return new Track(result);
+    }
+
+    /**
+     * Fills the stream buffers of an opened track by starting and pausing it
+     * silently, so starting it later only resumes playback.
+     * @param track
+     */
+    private void prime(Track track) {
+        track.primed = true;
+        track.music = get(track.result);
+        if (track.music != null) {
+            track.music.setVolume(0);
+            track.music.play();
+            track.music.pause();
+        }
+    }
+
+    private void start(final Track track) {
+        if (!track.primed) {
+            track.primed = true;
+            track.music = get(track.result);
+        }
+        if (track.music == null) {
+            //skip the broken track, the next one is opened on the following update
+            if (current == null && playlist.size > 1) {
+                next = open((playlistIndex + 1) % playlist.size);
+            }
+            return;
+        }
+
+        track.music.setLooping(playlist.size == 1);
+        track.music.setOnCompletionListener(music -> track.completed = true);
+        if (current != null) {
+            if (fading != null) {
+                fading.dispose();
+            }
+            fading = current.music;
+            fadeTime = 0;
+            track.music.setVolume(0);
+        } else {
+            track.music.setVolume(volume);
+        }
+        track.music.play();
+        current = track;
+    }
+
+    private void abandon(Track track) {
+        if (track != null) {
+            abandoned.add(track.result);
+        }
+    }
+
+    private Music get(AsyncResult<Music> result) {
+        try {
+            return result.get();
+        } catch (GdxRuntimeException ex) {
+            Gdx.app.error(getClass().getName(), "Error opening music", ex);
+            return null;
+        }
+    }
+
+    public float getVolume() {
+        return volume;
+    }
+
+    public void setVolume(float volume) {
+        this.volume = volume;
+        if (current != null && fading == null) {
+            current.music.setVolume(volume);
+        }
+    }
+
+    public float getFadeDuration() {
+        return fadeDuration;
+    }
+
+    /**
+     * @param fadeDuration The length of crossfades between playlists in
+     * seconds.
+     */
+    public void setFadeDuration(float fadeDuration) {
+        this.fadeDuration = fadeDuration;
+    }
+
+    @Override
+    public void dispose() {
+        stop();
+        executor.dispose();
+        for (AsyncResult<Music> result : abandoned) {
+            Music music = get(result);
+            if (music != null) {
+                music.dispose();
+            }
+        }
+        abandoned.clear();
+    }
+
+    private static class Track {
+        final AsyncResult<Music> result;
+        Music music;
+        /**
+         * True once the music has been taken from the result.
+         */
+        boolean primed;
+        boolean completed;
+
+        Track(AsyncResult<Music> result) {
+            this.result = result;
+        }
+    }
+}
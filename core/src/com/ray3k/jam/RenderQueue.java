@@ -0,0 +1,341 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.ShortArray;
+import com.esotericsoftware.spine.BlendMode;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.Slot;
+import com.esotericsoftware.spine.attachments.Attachment;
+import com.esotericsoftware.spine.utils.TwoColorPolygonBatch;
+import java.util.Arrays;
+
+/**
+ * Collects draws for a {@link TwoColorPolygonBatch} and submits them sorted, so
+ * draws sharing a texture, blend function and shader are sent together and
+ * the batch flushes once for each of them instead of on every change. Draws
+ * are grouped by layer and layers are submitted in increasing order. Within a
+ * layer draws may be reordered, so put draws that must overlap in a specific
+ * order in different layers or in a group. Draws with the same state keep
+ * their order. A group, such as the slots of a skeleton, is sorted by the state
+ * of its first draw and its draws are submitted together in the order they
+ * were made.
+ * <p>
+ * The number of flushes avoided compared to submitting the draws in the order
+ * they were made is counted from the state changes, ignoring flushes caused
+ * by a full batch.
+ */
+public class RenderQueue {
+    public static final int MAX_LAYER = (1 << 12) - 1;
+    private static final int MAX_STATES = 1 << 20;
+    private static final int MAX_COMMANDS = 1 << 24;
+    /**
+     * Ints per command: layer, state, vertex offset, vertex count, triangle
+     * offset, triangle count, number of commands in the group it starts or 0
+     * if it continues a group.
+     */
+    private static final int COMMAND_SIZE = 7;
+    private final FloatArray vertices = new FloatArray(false, 4096);
+    private final ShortArray triangles = new ShortArray(false, 2048);
+    private final IntArray commands = new IntArray(false, 1024);
+    private long[] keys = new long[256];
+    private final Array<State> states = new Array<>();
+    private final Array<State> freeStates = new Array<>();
+    private final ObjectIntMap<State> stateIds = new ObjectIntMap<>();
+    private final State lookup = new State();
+    private float[] scratch = new float[4 * 1024];
+    private int groupStart = -1;
+    private int layer;
+    private int blendSrcFunc = GL20.GL_SRC_ALPHA;
+    private int blendDstFunc = GL20.GL_ONE_MINUS_SRC_ALPHA;
+    private ShaderProgram shader;
+    private int flushesSaved;
+    private long totalFlushesSaved;
+
+    /**
+     * @param layer The layer following draws are added to, from 0 to
+     * {@link #MAX_LAYER}.
+     */
+    public void setLayer(int layer) {
+        if (layer < 0 || layer > MAX_LAYER) {
+            throw new GdxRuntimeException("Layer out of range: " + layer);
+        }
+        this.layer = layer;
+    }
+
+    public int getLayer() {
+        return layer;
+    }
+
+    public void setBlendFunction(int srcFunc, int dstFunc) {
+        blendSrcFunc = srcFunc;
+        blendDstFunc = dstFunc;
+    }
+
+    /**
+     * @param shader The shader of following draws or null for the shader the
+     * batch has when the queue is flushed.
+     */
+    public void setShader(ShaderProgram shader) {
+        this.shader = shader;
+    }
+
+    /**
+     * Adds a draw in the two color vertex layout of
+     * {@link TwoColorPolygonBatch#draw(Texture, float[], int, int, short[], int, int)}.
+     * The vertices and triangles are copied.
+     * @param texture
+     * @param polygonVertices
+     * @param verticesOffset
+     * @param verticesCount
+     * @param polygonTriangles
+     * @param trianglesOffset
+     * @param trianglesCount
+     */
+    public void draw(Texture texture, float[] polygonVertices, int verticesOffset, int verticesCount,
+            short[] polygonTriangles, int trianglesOffset, int trianglesCount) {
+        if (commands.size / COMMAND_SIZE == MAX_COMMANDS) {
+            throw new GdxRuntimeException("Too many draws queued: " + MAX_COMMANDS);
+        }
+
+        commands.add(layer);
+        commands.add(getStateId(texture));
+        commands.add(vertices.size);
+        commands.add(verticesCount);
+        commands.add(triangles.size);
+        commands.add(trianglesCount);
+        commands.add(groupStart == -1 ? 1 : 0);
+        vertices.addAll(polygonVertices, verticesOffset, verticesCount);
+        triangles.addAll(polygonTriangles, trianglesOffset, trianglesCount);
+    }
+
+    /**
+     * Starts a group. Draws until {@link #endGroup()} are kept together in the
+     * order they are made, even when their state changes.
+     */
+    public void beginGroup() {
+        if (groupStart != -1) {
+            throw new GdxRuntimeException("A group is already started.");
+        }
+        groupStart = commands.size / COMMAND_SIZE;
+    }
+
+    public void endGroup() {
+        if (groupStart == -1) {
+            throw new GdxRuntimeException("No group was started.");
+        }
+        int count = commands.size / COMMAND_SIZE - groupStart;
+        if (count > 0) {
+            commands.set(groupStart * COMMAND_SIZE + 6, count);
+        }
+        groupStart = -1;
+    }
+
+    /**
+     * Adds the region and mesh attachments of a posed skeleton as one group,
+     * as {@link com.esotericsoftware.spine.SkeletonRenderer} would draw them.
+     * Clipping is not applied. The blend function is left as the skeleton's
+     * last slot set it.
+     * @param skeleton
+     * @param premultipliedAlpha
+     */
+    public void draw(Skeleton skeleton, boolean premultipliedAlpha) {
+        beginGroup();
+        for (Slot slot : skeleton.getDrawOrder()) {
+            int length = SkeletonVertices.getVerticesLength(slot.getAttachment());
+            if (length > scratch.length) {
+                scratch = new float[MathUtils.nextPowerOfTwo(length)];
+            }
+            int count = SkeletonVertices.compute(skeleton, slot, premultipliedAlpha, scratch);
+            if (count == 0) {
+                continue;
+            }
+
+            Attachment attachment = slot.getAttachment();
+            BlendMode blendMode = slot.getData().getBlendMode();
+            setBlendFunction(blendMode.getSource(premultipliedAlpha), blendMode.getDest());
+            short[] attachmentTriangles = SkeletonVertices.getTriangles(attachment);
+            draw(SkeletonVertices.getTexture(attachment), scratch, 0, count, attachmentTriangles, 0, attachmentTriangles.length);
+        }
+        endGroup();
+    }
+
+    private int getStateId(Texture texture) {
+        lookup.set(texture, blendSrcFunc, blendDstFunc, shader);
+        int id = stateIds.get(lookup, -1);
+        if (id == -1) {
+            if (states.size == MAX_STATES) {
+                throw new GdxRuntimeException("Too many render states: " + MAX_STATES);
+            }
+
+            State state = freeStates.size > 0 ? freeStates.pop() : new State();
+            state.set(texture, blendSrcFunc, blendDstFunc, shader);
+            id = states.size;
+            states.add(state);
+            stateIds.put(state, id);
+        }
+        return id;
+    }
+
+    /**
+     * Submits the queued draws to the batch and clears the queue. The batch
+     * must have been started. Its shader and blend function are restored
+     * afterward.
+     * @param batch
+     */
+    public void flush(TwoColorPolygonBatch batch) {
+        if (groupStart != -1) {
+            throw new GdxRuntimeException("endGroup must be called before flush.");
+        }
+        int count = commands.size / COMMAND_SIZE;
+        if (count > 0) {
+            submit(batch, count);
+        }
+
+        vertices.clear();
+        triangles.clear();
+        commands.clear();
+        freeStates.addAll(states);
+        for (State state : states) {
+            state.set(null, 0, 0, null);
+        }
+        states.clear();
+        stateIds.clear();
+    }
+
+    private void submit(TwoColorPolygonBatch batch, int count) {
+        if (keys.length < count) {
+            keys = new long[Math.max(count, keys.length * 2)];
+        }
+
+        int[] items = commands.items;
+        int unsortedChanges = 0;
+        int lastState = -1;
+        int groups = 0;
+        for (int i = 0; i < count; i++) {
+            int stateId = items[i * COMMAND_SIZE + 1];
+            if (items[i * COMMAND_SIZE + 6] > 0) {
+                //layer, then state, then submission order of the first draw of each group
+                keys[groups++] = (long) items[i * COMMAND_SIZE] << 44 | (long) stateId << 24 | i;
+            }
+            if (stateId != lastState) {
+                unsortedChanges++;
+                lastState = stateId;
+            }
+        }
+        Arrays.sort(keys, 0, groups);
+
+        ShaderProgram originalShader = batch.getShader();
+        int originalSrcFunc = batch.getBlendSrcFunc();
+        int originalDstFunc = batch.getBlendDstFunc();
+        int sortedChanges = 0;
+        lastState = -1;
+        for (int i = 0; i < groups; i++) {
+            int first = (int) (keys[i] & (MAX_COMMANDS - 1));
+            for (int command = first * COMMAND_SIZE, end = command + items[command + 6] * COMMAND_SIZE; command < end; command += COMMAND_SIZE) {
+                int stateId = items[command + 1];
+                State state = states.get(stateId);
+                if (stateId != lastState) {
+                    sortedChanges++;
+                    lastState = stateId;
+                    batch.setShader(state.shader == null ? originalShader : state.shader);
+                    batch.setBlendFunction(state.blendSrcFunc, state.blendDstFunc);
+                }
+                batch.draw(state.texture, vertices.items, items[command + 2], items[command + 3],
+                        triangles.items, items[command + 4], items[command + 5]);
+            }
+        }
+        batch.setShader(originalShader);
+        batch.setBlendFunction(originalSrcFunc, originalDstFunc);
+
+        flushesSaved += unsortedChanges - sortedChanges;
+        totalFlushesSaved += unsortedChanges - sortedChanges;
+    }
+
+    /**
+     * @return Flushes avoided since {@link #resetFlushesSaved()} was called.
+     */
+    public int getFlushesSaved() {
+        return flushesSaved;
+    }
+
+    public void resetFlushesSaved() {
+        flushesSaved = 0;
+    }
+
+    /**
+     * @return Flushes avoided since the queue was created.
+     */
+    public long getTotalFlushesSaved() {
+        return totalFlushesSaved;
+    }
+
+    /**
+     * @return The number of draws waiting to be submitted.
+     */
+    public int size() {
+        return commands.size / COMMAND_SIZE;
+    }
+
+    private static class State {
+        Texture texture;
+        int blendSrcFunc;
+        int blendDstFunc;
+        ShaderProgram shader;
+
+        void set(Texture texture, int blendSrcFunc, int blendDstFunc, ShaderProgram shader) {
+            this.texture = texture;
+            this.blendSrcFunc = blendSrcFunc;
+            this.blendDstFunc = blendDstFunc;
+            this.shader = shader;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof State)) {
+                return false;
+            }
+            State other = (State) obj;
+            return texture == other.texture && blendSrcFunc == other.blendSrcFunc
+                    && blendDstFunc == other.blendDstFunc && shader == other.shader;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(texture);
+            hash = 31 * hash + blendSrcFunc;
+            hash = 31 * hash + blendDstFunc;
+            return 31 * hash + System.identityHashCode(shader);
+        }
+    }
+}
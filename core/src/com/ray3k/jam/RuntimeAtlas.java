@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Packs small generated and loose textures into shared pages at runtime, so
+ * drawables built in code are drawn from a few textures instead of one each
+ * and the batch doesn't flush between them. New pages are added when the
+ * current ones are full. Regions are valid as soon as they are packed, but
+ * pixels packed into an existing page only reach the GPU on
+ * {@link #update()}, which {@link Core} calls every frame. Textures larger
+ * than a page can't be packed.
+ */
+public class RuntimeAtlas implements Disposable {
+    public static final String WHITE = "white";
+    private final PixmapPacker packer;
+    private final ObjectMap<String, TextureRegion> regions = new ObjectMap<>();
+    private TextureFilter minFilter = TextureFilter.Linear;
+    private TextureFilter magFilter = TextureFilter.Linear;
+
+    /**
+     * @param pageSize The width and height of every page.
+     */
+    public RuntimeAtlas(int pageSize) {
+        //edges are duplicated into the padding so filtering doesn't bleed neighbors in
+        packer = new PixmapPacker(pageSize, pageSize, Pixmap.Format.RGBA8888, 2, true, new PixmapPacker.SkylineStrategy());
+    }
+
+    /**
+     * Packs a copy of the pixmap. The caller keeps ownership of the pixmap.
+     * @param name
+     * @param pixmap
+     * @return The region of the packed pixmap. If a pixmap was already packed
+     * with this name, its region is returned instead.
+     */
+    public TextureRegion pack(String name, Pixmap pixmap) {
+        TextureRegion region = regions.get(name);
+        if (region != null) {
+            return region;
+        }
+
+        Rectangle rect = packer.pack(name, pixmap);
+        PixmapPacker.Page page = packer.getPage(name);
+        if (page.getTexture() == null) {
+            //a new page, upload it now so the region has a texture
+            packer.updatePageTextures(minFilter, magFilter, false);
+        }
+
+        region = new TextureRegion(page.getTexture(), (int) rect.x, (int) rect.y, (int) rect.width, (int) rect.height);
+        regions.put(name, region);
+        return region;
+    }
+
+    /**
+     * Packs an image file, typically a loose texture.
+     * @param name
+     * @param file
+     * @return
+     */
+    public TextureRegion pack(String name, FileHandle file) {
+        TextureRegion region = regions.get(name);
+        if (region != null) {
+            return region;
+        }
+
+        Pixmap pixmap = new Pixmap(file);
+        try {
+            return pack(name, pixmap);
+        } finally {
+            pixmap.dispose();
+        }
+    }
+
+    /**
+     * Packs a rectangle of a single color.
+     * @param name
+     * @param width
+     * @param height
+     * @param color
+     * @return
+     */
+    public TextureRegion pack(String name, int width, int height, Color color) {
+        TextureRegion region = regions.get(name);
+        if (region != null) {
+            return region;
+        }
+
+        Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        try {
+            pixmap.setColor(color);
+            pixmap.fill();
+            return pack(name, pixmap);
+        } finally {
+            pixmap.dispose();
+        }
+    }
+
+    /**
+     * @return A single white pixel, as needed by {@link GradientBatch} and
+     * {@link GradientDrawable}. Its pixels are uploaded immediately.
+     */
+    public TextureRegion getWhiteRegion() {
+        if (!regions.containsKey(WHITE)) {
+            pack(WHITE, 1, 1, Color.WHITE);
+            update();
+        }
+        return regions.get(WHITE);
+    }
+
+    /**
+     * @param name
+     * @return The region packed with this name or null.
+     */
+    public TextureRegion findRegion(String name) {
+        return regions.get(name);
+    }
+
+    /**
+     * Uploads the pages that received pixmaps since the last update.
+     */
+    public void update() {
+        packer.updatePageTextures(minFilter, magFilter, false);
+    }
+
+    /**
+     * @return The number of pages, which is the number of textures drawn from.
+     */
+    public int getPageCount() {
+        return packer.getPages().size;
+    }
+
+    public void setFilter(TextureFilter minFilter, TextureFilter magFilter) {
+        this.minFilter = minFilter;
+        this.magFilter = magFilter;
+        for (PixmapPacker.Page page : packer.getPages()) {
+            Texture texture = page.getTexture();
+            if (texture != null) {
+                texture.setFilter(minFilter, magFilter);
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        for (PixmapPacker.Page page : packer.getPages()) {
+            Texture texture = page.getTexture();
+            if (texture != null) {
+                texture.dispose();
+            }
+        }
+        packer.dispose();
+        regions.clear();
+    }
+}
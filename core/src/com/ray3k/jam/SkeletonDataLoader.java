@@ -32,9 +32,11 @@ import com.badlogic.gdx.assets.loaders.FileHandleResolver;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.utils.Array;
-import com.esotericsoftware.spine.SkeletonBinary;
 import com.esotericsoftware.spine.SkeletonData;
-import com.esotericsoftware.spine.SkeletonJson;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * {@link AssetLoader} for {@link SkeletonData} instances. Loads an exported
@@ -59,8 +61,14 @@ import com.esotericsoftware.spine.SkeletonJson;
  * @author Alvaro Barbeira
  */
 public class SkeletonDataLoader extends AsynchronousAssetLoader<SkeletonData, SkeletonDataLoader.SkeletonDataLoaderParameter> {
+    private static final Map<TextureAtlas, SkeletonLoaderContext> CONTEXTS = Collections.synchronizedMap(new WeakHashMap<TextureAtlas, SkeletonLoaderContext>());
 
-    SkeletonData skeletonData;
+    /**
+     * Skeletons parsed by loadAsync and not yet handed out by loadSync, keyed
+     * by file name. Keeping the state per request lets a single loader parse
+     * any number of skeletons at the same time.
+     */
+    private final ConcurrentHashMap<String, SkeletonData> loaded = new ConcurrentHashMap<>();
 
     public SkeletonDataLoader(FileHandleResolver resolver) {
         super(resolver);
@@ -68,24 +76,37 @@ public class SkeletonDataLoader extends AsynchronousAssetLoader<SkeletonData, Sk
 
     @Override
     public void loadAsync(AssetManager manager, String fileName, FileHandle file, SkeletonDataLoaderParameter parameter) {
-        skeletonData = null;
         TextureAtlas atlas = manager.get(parameter.atlasName, TextureAtlas.class);
-
-        String extension = file.extension();
-        if (extension.toLowerCase().equals("skel")) {
-            SkeletonBinary skeletonBinary = new SkeletonBinary(atlas);
-            skeletonBinary.setScale(parameter.scale);
-            skeletonData = skeletonBinary.readSkeletonData(file);
-        } else {
-            SkeletonJson skeletonJson = new SkeletonJson(atlas);
-            skeletonJson.setScale(parameter.scale);
-            skeletonData = skeletonJson.readSkeletonData(file);
-        }
+        FileHandle source = parameter.sourcePath == null ? file : resolve(parameter.sourcePath);
+        loaded.put(fileName, readSkeletonData(source, atlas, parameter.scale));
+    }
+    
+    /**
+     * Parses a skeleton file against an already loaded atlas. Parsers and the
+     * region lookup are shared by every skeleton using the same atlas through
+     * its {@link SkeletonLoaderContext}. This may be called from any thread.
+     * @param file A binary file with the 'skel' extension or a JSON file.
+     * @param atlas
+     * @param scale
+     * @return
+     */
+    public static SkeletonData readSkeletonData(FileHandle file, TextureAtlas atlas, float scale) {
+        return getContext(atlas).readSkeletonData(file, scale);
+    }
+    
+    /**
+     * Returns the loader context of the atlas, creating it on first use.
+     * Contexts are released once their atlas is no longer referenced.
+     * @param atlas
+     * @return
+     */
+    public static SkeletonLoaderContext getContext(TextureAtlas atlas) {
+        return CONTEXTS.computeIfAbsent(atlas, SkeletonLoaderContext::new);
     }
 
     @Override
     public SkeletonData loadSync(AssetManager manager, String fileName, FileHandle file, SkeletonDataLoaderParameter parameter) {
-        return skeletonData;
+        return loaded.remove(fileName);
     }
 
     @SuppressWarnings({"rawtypes", "unchecked"})
@@ -108,6 +129,11 @@ public class SkeletonDataLoader extends AsynchronousAssetLoader<SkeletonData, Sk
 
         public String atlasName;
         public float scale;
+        /**
+         * The file the skeleton is parsed from, such as an exported binary of
+         * a JSON skeleton, or null to parse the asset's own file.
+         */
+        public String sourcePath;
 
         public SkeletonDataLoaderParameter(String atlasName, float scale) {
             this.atlasName = atlasName;
@@ -0,0 +1,513 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.esotericsoftware.spine.AnimationState;
+import com.esotericsoftware.spine.AnimationState.TrackEntry;
+import com.esotericsoftware.spine.AnimationStateData;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.SkeletonRenderer;
+import com.esotericsoftware.spine.Slot;
+import com.esotericsoftware.spine.SlotData;
+import com.esotericsoftware.spine.utils.TwoColorPolygonBatch;
+import com.ray3k.jam.BakedSkeleton.BakedAnimation;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs many animated skeletons. Skeleton and animation state pairs are pooled
+ * per {@link SkeletonData}, and every frame the animation states of all active
+ * instances are applied and their world transforms computed in parallel on a
+ * fork-join pool. Instances outside of the view only advance their animation
+ * time and skip the pose entirely. Each instance is kept in a
+ * {@link SpatialGrid} by its setup pose bounds around its position, enlarged
+ * by {@link #getBoundsMargin()} to leave room for animation. Instances are
+ * only moved in the grid when their position or scale changed, and the grid
+ * is queried for the view instead of testing every instance.
+ * <p>
+ * Instances flagged as {@link Instance#cached} replay the frames of a
+ * {@link BakedSkeleton} instead, as long as they play a single baked animation
+ * without mixing.
+ * <p>
+ * {@link #start(float, Rectangle)} forks the update so the render thread can
+ * do other work before {@link #finish()} joins it. Instances must not be
+ * modified or drawn in between. Animation state listeners are called on the
+ * worker threads.
+ */
+public class SkeletonInstances {
+    /**
+     * The number of instances updated by a single task.
+     */
+    private static final int BATCH_SIZE = 32;
+    private static final float DEFAULT_CELL_SIZE = 256;
+    private static final Comparator<Instance> ORDER = (a, b) -> Integer.compare(a.order, b.order);
+    private final ForkJoinPool pool;
+    private final ObjectMap<SkeletonData, Array<Instance>> freeInstances = new ObjectMap<>();
+    private final ObjectMap<SkeletonData, AnimationStateData> stateData = new ObjectMap<>();
+    private final ObjectMap<SkeletonData, Rectangle> setupBounds = new ObjectMap<>();
+    private final ObjectMap<SkeletonData, BakedSkeleton> bakedSkeletons = new ObjectMap<>();
+    private final Array<Instance> instances = new Array<>(false, 256);
+    private final SpatialGrid<Instance> grid;
+    /**
+     * The instances in view, in the order they were obtained.
+     */
+    private final Array<Instance> visible = new Array<>(false, 256);
+    private int nextOrder;
+    private float boundsMargin = 1.5f;
+    private float defaultBoundsSize = 100;
+    private float delta;
+    private ForkJoinTask<?> task;
+
+    public SkeletonInstances() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * @param pool
+     * @param cellSize The cell size of the spatial grid, around the size of a
+     * typical skeleton.
+     */
+    public SkeletonInstances(ForkJoinPool pool, float cellSize) {
+        this.pool = pool;
+        grid = new SpatialGrid<>(cellSize);
+    }
+
+    /**
+     * Takes an instance from the pool, in its setup pose without animations.
+     * Waits for a running update first.
+     * @param skeletonData
+     * @return
+     */
+    public Instance obtain(SkeletonData skeletonData) {
+        finish();
+        Array<Instance> free = freeInstances.get(skeletonData);
+        Instance instance;
+        if (free != null && free.size > 0) {
+            instance = free.pop();
+        } else {
+            instance = new Instance(new Skeleton(skeletonData), new AnimationState(getStateData(skeletonData)), getSetupBounds(skeletonData));
+            instance.bakedSkeleton = bakedSkeletons.get(skeletonData);
+        }
+        instance.order = nextOrder++;
+        instances.add(instance);
+        updateBounds(instance);
+        return instance;
+    }
+
+    /**
+     * Returns an instance to the pool, resetting it to its setup pose. Waits
+     * for a running update first.
+     * @param instance
+     */
+    public void free(Instance instance) {
+        finish();
+        if (!instances.removeValue(instance, true)) {
+            return;
+        }
+
+        instance.state.clearTracks();
+        instance.state.clearListeners();
+        instance.skeleton.setToSetupPose();
+        instance.skeleton.setPosition(0, 0);
+        grid.remove(instance.gridEntry);
+        instance.gridEntry = null;
+        if (instance.visible) {
+            visible.removeValue(instance, true);
+            instance.visible = false;
+        }
+        instance.cached = false;
+        instance.bakedAnimation = null;
+
+        SkeletonData skeletonData = instance.skeleton.getData();
+        Array<Instance> free = freeInstances.get(skeletonData);
+        if (free == null) {
+            free = new Array<>(false, 16);
+            freeInstances.put(skeletonData, free);
+        }
+        free.add(instance);
+    }
+
+    /**
+     * Returns every active instance to the pool.
+     */
+    public void clear() {
+        finish();
+        while (instances.size > 0) {
+            free(instances.peek());
+        }
+    }
+
+    /**
+     * @param skeletonData
+     * @return The mix times shared by every instance of the skeleton.
+     */
+    public AnimationStateData getStateData(SkeletonData skeletonData) {
+        AnimationStateData data = stateData.get(skeletonData);
+        if (data == null) {
+            data = new AnimationStateData(skeletonData);
+            stateData.put(skeletonData, data);
+        }
+        return data;
+    }
+
+    /**
+     * Bakes the animations of the skeleton for instances flagged as cached.
+     * @param skeletonData
+     * @param fps
+     * @param premultipliedAlpha Must match the skeleton renderer.
+     * @param memoryCap The most bytes used by the baked frames of the skeleton.
+     * @return
+     */
+    public BakedSkeleton bake(SkeletonData skeletonData, float fps, boolean premultipliedAlpha, long memoryCap) {
+        finish();
+        BakedSkeleton bakedSkeleton = new BakedSkeleton(skeletonData, fps, premultipliedAlpha, memoryCap);
+        bakedSkeletons.put(skeletonData, bakedSkeleton);
+        for (Instance instance : instances) {
+            if (instance.skeleton.getData() == skeletonData) {
+                instance.bakedSkeleton = bakedSkeleton;
+            }
+        }
+        Array<Instance> free = freeInstances.get(skeletonData);
+        if (free != null) {
+            for (Instance instance : free) {
+                instance.bakedSkeleton = bakedSkeleton;
+            }
+        }
+        return bakedSkeleton;
+    }
+
+    private Rectangle getSetupBounds(SkeletonData skeletonData) {
+        Rectangle bounds = setupBounds.get(skeletonData);
+        if (bounds == null) {
+            Skeleton skeleton = new Skeleton(skeletonData);
+            skeleton.updateWorldTransform();
+            Vector2 offset = new Vector2();
+            Vector2 size = new Vector2();
+            skeleton.getBounds(offset, size, new FloatArray());
+            if (size.x < 0 || size.y < 0) {
+                //nothing is visible in the setup pose, getBounds returns its sentinels
+                bounds = new Rectangle(-defaultBoundsSize / 2, -defaultBoundsSize / 2, defaultBoundsSize, defaultBoundsSize);
+            } else {
+                bounds = new Rectangle(offset.x, offset.y, size.x, size.y);
+            }
+            setupBounds.put(skeletonData, bounds);
+        }
+        return bounds;
+    }
+
+    /**
+     * Updates every instance and waits for the update to finish.
+     * @param delta
+     * @param view The visible area in world coordinates.
+     */
+    public void update(float delta, Rectangle view) {
+        start(delta, view);
+        finish();
+    }
+
+    /**
+     * Starts updating every instance on the pool.
+     * @param delta
+     * @param view The visible area in world coordinates.
+     */
+    public void start(float delta, Rectangle view) {
+        finish();
+        this.delta = delta;
+
+        Instance[] items = instances.items;
+        for (int i = 0, n = instances.size; i < n; i++) {
+            Instance instance = items[i];
+            Skeleton skeleton = instance.skeleton;
+            if (skeleton.getX() != instance.x || skeleton.getY() != instance.y
+                    || skeleton.getScaleX() != instance.scaleX || skeleton.getScaleY() != instance.scaleY) {
+                updateBounds(instance);
+            }
+        }
+
+        for (Instance instance : visible) {
+            instance.visible = false;
+        }
+        visible.clear();
+        grid.query(view, visible);
+        for (Instance instance : visible) {
+            instance.visible = true;
+        }
+        visible.sort(ORDER);
+
+        task = pool.submit(new UpdateTask(0, instances.size));
+    }
+
+    /**
+     * Waits for the update started by {@link #start(float, Rectangle)}.
+     */
+    public void finish() {
+        if (task != null) {
+            task.join();
+            task = null;
+        }
+    }
+
+    /**
+     * Draws every visible instance.
+     * @param batch
+     * @param skeletonRenderer
+     */
+    public void draw(TwoColorPolygonBatch batch, SkeletonRenderer skeletonRenderer) {
+        finish();
+        for (Instance instance : visible) {
+            Skeleton skeleton = instance.skeleton;
+            if (instance.bakedAnimation != null) {
+                instance.bakedSkeleton.draw(batch, instance.bakedAnimation, instance.bakedTime,
+                        skeleton.getX(), skeleton.getY(), skeleton.getScaleX(), skeleton.getScaleY());
+            } else {
+                skeletonRenderer.draw(batch, skeleton);
+            }
+        }
+    }
+
+    /**
+     * Adds every visible instance to the queue.
+     * @param queue
+     * @param premultipliedAlpha Must match the baked skeletons.
+     */
+    public void draw(RenderQueue queue, boolean premultipliedAlpha) {
+        finish();
+        for (Instance instance : visible) {
+            Skeleton skeleton = instance.skeleton;
+            if (instance.bakedAnimation != null) {
+                instance.bakedSkeleton.draw(queue, instance.bakedAnimation, instance.bakedTime,
+                        skeleton.getX(), skeleton.getY(), skeleton.getScaleX(), skeleton.getScaleY());
+            } else {
+                queue.draw(skeleton, premultipliedAlpha);
+            }
+        }
+    }
+
+    /**
+     * Moves the instance in the grid to its current position and scale.
+     * @param instance
+     */
+    private void updateBounds(Instance instance) {
+        Skeleton skeleton = instance.skeleton;
+        instance.x = skeleton.getX();
+        instance.y = skeleton.getY();
+        instance.scaleX = skeleton.getScaleX();
+        instance.scaleY = skeleton.getScaleY();
+
+        Rectangle bounds = instance.setupBounds;
+        float marginX = bounds.width * (boundsMargin - 1) / 2;
+        float marginY = bounds.height * (boundsMargin - 1) / 2;
+        float x = instance.x + (bounds.x - marginX) * instance.scaleX;
+        float y = instance.y + (bounds.y - marginY) * instance.scaleY;
+        float width = (bounds.width + marginX * 2) * instance.scaleX;
+        float height = (bounds.height + marginY * 2) * instance.scaleY;
+        if (instance.gridEntry == null) {
+            instance.gridEntry = grid.add(instance, x, y, width, height);
+        } else {
+            grid.update(instance.gridEntry, x, y, width, height);
+        }
+    }
+
+    private void update(Instance instance) {
+        Skeleton skeleton = instance.skeleton;
+        instance.state.update(delta);
+        instance.bakedAnimation = instance.visible && instance.cached ? findBakedAnimation(instance) : null;
+        if (instance.visible && instance.bakedAnimation == null) {
+            instance.state.apply(skeleton);
+            skeleton.updateWorldTransform();
+        }
+    }
+
+    /**
+     * @param instance
+     * @return The baked animation the instance can replay or null if it must be
+     * posed.
+     */
+    private BakedAnimation findBakedAnimation(Instance instance) {
+        if (instance.bakedSkeleton == null) {
+            return null;
+        }
+
+        Array<TrackEntry> tracks = instance.state.getTracks();
+        TrackEntry entry = tracks.size > 0 ? tracks.first() : null;
+        if (entry == null || entry.getMixingFrom() != null) {
+            return null;
+        }
+        for (int i = 1; i < tracks.size; i++) {
+            if (tracks.get(i) != null) {
+                return null;
+            }
+        }
+
+        BakedAnimation bakedAnimation = instance.bakedSkeleton.get(entry.getAnimation());
+        if (bakedAnimation == null || !isBakeState(instance.skeleton, bakedAnimation)) {
+            return null;
+        }
+        instance.bakedTime = entry.getAnimationTime();
+        return bakedAnimation;
+    }
+
+    /**
+     * @param skeleton
+     * @param bakedAnimation
+     * @return True if the skeleton looks as it did when it was baked: the
+     * default skin, a white skeleton color and the setup colors on the slots
+     * the animation doesn't key. Keyed slot colors are baked as animated.
+     */
+    private static boolean isBakeState(Skeleton skeleton, BakedAnimation bakedAnimation) {
+        if (skeleton.getSkin() != null || !skeleton.getColor().equals(Color.WHITE)) {
+            return false;
+        }
+
+        Array<Slot> slots = skeleton.getSlots();
+        for (int i = 0; i < slots.size; i++) {
+            if (bakedAnimation.isColorKeyed(i)) {
+                continue;
+            }
+            Slot slot = slots.get(i);
+            SlotData data = slot.getData();
+            if (!slot.getColor().equals(data.getColor())) {
+                return false;
+            }
+            Color darkColor = slot.getDarkColor();
+            if (darkColor != null && !darkColor.equals(data.getDarkColor())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The instances in view during the last update, in draw order.
+     * Don't modify the array.
+     */
+    public Array<Instance> getVisible() {
+        return visible;
+    }
+
+    /**
+     * @return The active instances. Don't modify the array.
+     */
+    public Array<Instance> getInstances() {
+        return instances;
+    }
+
+    public float getBoundsMargin() {
+        return boundsMargin;
+    }
+
+    /**
+     * @param boundsMargin The factor the setup pose bounds are scaled by
+     * around their center when testing visibility.
+     */
+    public void setBoundsMargin(float boundsMargin) {
+        finish();
+        this.boundsMargin = boundsMargin;
+        for (Instance instance : instances) {
+            updateBounds(instance);
+        }
+    }
+
+    public float getDefaultBoundsSize() {
+        return defaultBoundsSize;
+    }
+
+    /**
+     * @param defaultBoundsSize The width and height of the bounds around the
+     * skeleton position used for skeletons that show no attachment in their
+     * setup pose, such as effects whose attachments are keyed in animations.
+     * Only affects skeletons obtained for the first time afterward.
+     */
+    public void setDefaultBoundsSize(float defaultBoundsSize) {
+        this.defaultBoundsSize = defaultBoundsSize;
+    }
+
+    private class UpdateTask extends RecursiveAction {
+        private final int start;
+        private final int end;
+
+        UpdateTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= BATCH_SIZE) {
+                Instance[] items = instances.items;
+                for (int i = start; i < end; i++) {
+                    update(items[i]);
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new UpdateTask(start, middle), new UpdateTask(middle, end));
+            }
+        }
+    }
+
+    public static class Instance {
+        public final Skeleton skeleton;
+        public final AnimationState state;
+        final Rectangle setupBounds;
+        boolean visible;
+        int order;
+        SpatialGrid.Entry<Instance> gridEntry;
+        /**
+         * The position and scale the grid bounds were computed for.
+         */
+        float x;
+        float y;
+        float scaleX;
+        float scaleY;
+        /**
+         * Replays baked frames when possible instead of posing the skeleton.
+         */
+        public boolean cached;
+        BakedSkeleton bakedSkeleton;
+        BakedAnimation bakedAnimation;
+        float bakedTime;
+
+        Instance(Skeleton skeleton, AnimationState state, Rectangle setupBounds) {
+            this.skeleton = skeleton;
+            this.state = state;
+            this.setupBounds = setupBounds;
+        }
+
+        /**
+         * @return True if the instance was in view during the last update.
+         */
+        public boolean isVisible() {
+            return visible;
+        }
+    }
+}
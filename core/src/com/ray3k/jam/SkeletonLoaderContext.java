@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.esotericsoftware.spine.SkeletonBinary;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.SkeletonJson;
+import com.esotericsoftware.spine.Skin;
+import com.esotericsoftware.spine.attachments.AttachmentLoader;
+import com.esotericsoftware.spine.attachments.BoundingBoxAttachment;
+import com.esotericsoftware.spine.attachments.ClippingAttachment;
+import com.esotericsoftware.spine.attachments.MeshAttachment;
+import com.esotericsoftware.spine.attachments.PathAttachment;
+import com.esotericsoftware.spine.attachments.PointAttachment;
+import com.esotericsoftware.spine.attachments.RegionAttachment;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Shared state for parsing skeletons against a single atlas. The atlas regions
+ * are hashed by name once, replacing the linear search of
+ * {@link TextureAtlas#findRegion(String)} for every attachment. Parsers are
+ * pooled and reused by every skeleton that uses the atlas. A parser is only
+ * used by one thread at a time, so any number of skeletons may be read
+ * concurrently.
+ */
+public class SkeletonLoaderContext implements AttachmentLoader {
+    private final ObjectMap<String, AtlasRegion> regions;
+    private final ConcurrentLinkedQueue<SkeletonJson> jsonParsers = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<SkeletonBinary> binaryParsers = new ConcurrentLinkedQueue<>();
+
+    public SkeletonLoaderContext(TextureAtlas atlas) {
+        regions = new ObjectMap<>(atlas.getRegions().size);
+        for (AtlasRegion region : atlas.getRegions()) {
+            //match findRegion, which returns the first region with the name
+            if (!regions.containsKey(region.name)) {
+                regions.put(region.name, region);
+            }
+        }
+    }
+
+    /**
+     * Parses a skeleton file with a pooled parser.
+     * @param file A binary file with the 'skel' extension or a JSON file.
+     * @param scale
+     * @return
+     */
+    public SkeletonData readSkeletonData(FileHandle file, float scale) {
+        if (file.extension().toLowerCase().equals("skel")) {
+            SkeletonBinary skeletonBinary = binaryParsers.poll();
+            if (skeletonBinary == null) {
+                skeletonBinary = new SkeletonBinary(this);
+            }
+            try {
+                skeletonBinary.setScale(scale);
+                return skeletonBinary.readSkeletonData(file);
+            } finally {
+                binaryParsers.add(skeletonBinary);
+            }
+        } else {
+            SkeletonJson skeletonJson = jsonParsers.poll();
+            if (skeletonJson == null) {
+                skeletonJson = new SkeletonJson(this);
+            }
+            try {
+                skeletonJson.setScale(scale);
+                return skeletonJson.readSkeletonData(file);
+            } finally {
+                jsonParsers.add(skeletonJson);
+            }
+        }
+    }
+
+    private AtlasRegion findRegion(String path, String name) {
+        AtlasRegion region = regions.get(path);
+        if (region == null) {
+            throw new RuntimeException("Region not found in atlas: " + path + " (attachment: " + name + ")");
+        }
+        return region;
+    }
+
+    @Override
+    public RegionAttachment newRegionAttachment(Skin skin, String name, String path) {
+        RegionAttachment attachment = new RegionAttachment(name);
+        attachment.setRegion(findRegion(path, name));
+        return attachment;
+    }
+
+    @Override
+    public MeshAttachment newMeshAttachment(Skin skin, String name, String path) {
+        MeshAttachment attachment = new MeshAttachment(name);
+        attachment.setRegion(findRegion(path, name));
+        return attachment;
+    }
+
+    @Override
+    public BoundingBoxAttachment newBoundingBoxAttachment(Skin skin, String name) {
+        return new BoundingBoxAttachment(name);
+    }
+
+    @Override
+    public ClippingAttachment newClippingAttachment(Skin skin, String name) {
+        return new ClippingAttachment(name);
+    }
+
+    @Override
+    public PathAttachment newPathAttachment(Skin skin, String name) {
+        return new PathAttachment(name);
+    }
+
+    @Override
+    public PointAttachment newPointAttachment(Skin skin, String name) {
+        return new PointAttachment(name);
+    }
+}
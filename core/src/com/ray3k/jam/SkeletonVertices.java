@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.NumberUtils;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.Slot;
+import com.esotericsoftware.spine.attachments.Attachment;
+import com.esotericsoftware.spine.attachments.MeshAttachment;
+import com.esotericsoftware.spine.attachments.RegionAttachment;
+
+/**
+ * Computes the vertices {@link com.esotericsoftware.spine.SkeletonRenderer}
+ * sends to a {@link com.esotericsoftware.spine.utils.TwoColorPolygonBatch}
+ * for the attachment of a slot: position, light color, dark color and texture
+ * coordinates. Only region and mesh attachments are drawn, clipping and vertex
+ * effects are left to the skeleton renderer.
+ */
+public class SkeletonVertices {
+    public static final int VERTEX_SIZE = 6;
+    public static final short[] QUAD_TRIANGLES = {0, 1, 2, 2, 3, 0};
+
+    /**
+     * @param skeleton
+     * @param slot
+     * @param premultipliedAlpha
+     * @param vertices Receives the vertices.
+     * @return The number of floats written, or 0 if the slot has nothing to
+     * draw or the vertices don't fit.
+     */
+    public static int compute(Skeleton skeleton, Slot slot, boolean premultipliedAlpha, float[] vertices) {
+        Attachment attachment = slot.getAttachment();
+        Color attachmentColor;
+        float[] uvs;
+        if (attachment instanceof RegionAttachment) {
+            RegionAttachment region = (RegionAttachment) attachment;
+            if (4 * VERTEX_SIZE > vertices.length) {
+                return 0;
+            }
+            region.computeWorldVertices(slot.getBone(), vertices, 0, VERTEX_SIZE);
+            attachmentColor = region.getColor();
+            uvs = region.getUVs();
+        } else if (attachment instanceof MeshAttachment) {
+            MeshAttachment mesh = (MeshAttachment) attachment;
+            int count = mesh.getWorldVerticesLength();
+            if (count / 2 * VERTEX_SIZE > vertices.length) {
+                return 0;
+            }
+            mesh.computeWorldVertices(slot, 0, count, vertices, 0, VERTEX_SIZE);
+            attachmentColor = mesh.getColor();
+            uvs = mesh.getUVs();
+        } else {
+            return 0;
+        }
+
+        Color skeletonColor = skeleton.getColor();
+        Color slotColor = slot.getColor();
+        float alpha = skeletonColor.a * slotColor.a * attachmentColor.a * 255;
+        float multiplier = premultipliedAlpha ? alpha : 255;
+        float light = NumberUtils.intToFloatColor(((int) alpha << 24)
+                | ((int) (skeletonColor.b * slotColor.b * attachmentColor.b * multiplier) << 16)
+                | ((int) (skeletonColor.g * slotColor.g * attachmentColor.g * multiplier) << 8)
+                | (int) (skeletonColor.r * slotColor.r * attachmentColor.r * multiplier));
+        Color darkColor = slot.getDarkColor();
+        float dark = darkColor == null ? 0 : NumberUtils.intToFloatColor(
+                ((int) (skeletonColor.b * darkColor.b * multiplier) << 16)
+                | ((int) (skeletonColor.g * darkColor.g * multiplier) << 8)
+                | (int) (skeletonColor.r * darkColor.r * multiplier));
+
+        int vertexCount = uvs.length / 2;
+        for (int i = 0, v = 0; i < vertexCount; i++, v += VERTEX_SIZE) {
+            vertices[v + 2] = light;
+            vertices[v + 3] = dark;
+            vertices[v + 4] = uvs[i * 2];
+            vertices[v + 5] = uvs[i * 2 + 1];
+        }
+        return vertexCount * VERTEX_SIZE;
+    }
+
+    /**
+     * @param attachment
+     * @return The number of floats {@link #compute(Skeleton, Slot, boolean, float[])}
+     * writes for the attachment, or 0 if it is not drawn.
+     */
+    public static int getVerticesLength(Attachment attachment) {
+        if (attachment instanceof RegionAttachment) {
+            return 4 * VERTEX_SIZE;
+        } else if (attachment instanceof MeshAttachment) {
+            return ((MeshAttachment) attachment).getWorldVerticesLength() / 2 * VERTEX_SIZE;
+        }
+        return 0;
+    }
+
+    /**
+     * @param attachment A region or mesh attachment.
+     * @return
+     */
+    public static Texture getTexture(Attachment attachment) {
+        if (attachment instanceof RegionAttachment) {
+            return ((RegionAttachment) attachment).getRegion().getTexture();
+        }
+        return ((MeshAttachment) attachment).getRegion().getTexture();
+    }
+
+    /**
+     * @param attachment A region or mesh attachment.
+     * @return
+     */
+    public static short[] getTriangles(Attachment attachment) {
+        if (attachment instanceof RegionAttachment) {
+            return QUAD_TRIANGLES;
+        }
+        return ((MeshAttachment) attachment).getTriangles();
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectFloatMap;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.StreamUtils;
+import com.badlogic.gdx.utils.TimeUtils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Plays the sound effects loaded in {@link Core#assetManager} on a fixed pool
+ * of voices. Sounds are retrieved through the {@link AssetCache} and pinned
+ * while a voice plays them. Sounds are triggered from any thread without locking and played
+ * once per frame by {@link #update()}. Identical triggers within a frame are
+ * merged into one voice. Each sound is limited to a number of concurrent
+ * voices, beyond which its oldest voice is replaced. When every voice is busy
+ * the oldest voice with the lowest priority is stolen, unless all of them
+ * outrank the new sound, in which case the new sound is dropped.
+ * <p>
+ * Sounds don't report when they finish, so a voice is considered busy for the
+ * duration read from the file header. Files whose duration can't be read hold
+ * their voice for {@link #getDefaultDuration()} seconds.
+ */
+public class SoundManager {
+    public static final int DEFAULT_PRIORITY = 0;
+    /**
+     * The largest possible Ogg page: a 27 byte header, 255 lacing values and
+     * 255 segments of 255 bytes.
+     */
+    private static final int MAX_OGG_PAGE_SIZE = 27 + 255 + 255 * 255;
+    private final AssetManager assetManager;
+    private final AssetCache assetCache;
+    private final Voice[] voices;
+    private final ConcurrentLinkedQueue<Trigger> triggers = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Trigger> freeTriggers = new ConcurrentLinkedQueue<>();
+    private final ObjectMap<String, Trigger> frameTriggers = new ObjectMap<>();
+    private final ObjectIntMap<String> limits = new ObjectIntMap<>();
+    private final ObjectFloatMap<String> durations = new ObjectFloatMap<>();
+    private int defaultLimit = 4;
+    private float defaultDuration = 1f;
+    private int played;
+    private int merged;
+    private int dropped;
+    private int stolen;
+
+    /**
+     * @param assetManager
+     * @param assetCache
+     * @param voices The number of sounds that may play at once. Keep it below
+     * the number of sources of the audio device to leave room for music.
+     */
+    public SoundManager(AssetManager assetManager, AssetCache assetCache, int voices) {
+        this.assetManager = assetManager;
+        this.assetCache = assetCache;
+        this.voices = new Voice[voices];
+        for (int i = 0; i < voices; i++) {
+            this.voices[i] = new Voice();
+        }
+    }
+
+    public void play(String path) {
+        play(path, 1f, 1f, 0f, DEFAULT_PRIORITY);
+    }
+
+    public void play(String path, int priority) {
+        play(path, 1f, 1f, 0f, priority);
+    }
+
+    /**
+     * Queues a sound to be played on the next call to {@link #update()}. Safe
+     * to call from any thread.
+     * @param path
+     * @param volume
+     * @param pitch
+     * @param pan
+     * @param priority Voices with a lower priority are stolen first.
+     */
+    public void play(String path, float volume, float pitch, float pan, int priority) {
+        Trigger trigger = freeTriggers.poll();
+        if (trigger == null) {
+            trigger = new Trigger();
+        }
+        trigger.path = path;
+        trigger.volume = volume;
+        trigger.pitch = pitch;
+        trigger.pan = pan;
+        trigger.priority = priority;
+        triggers.add(trigger);
+    }
+
+    /**
+     * Releases finished voices and plays the sounds triggered since the last
+     * update. Must be called from the render thread once per frame.
+     */
+    public void update() {
+        long time = TimeUtils.millis();
+        for (Voice voice : voices) {
+            if (voice.path != null && time >= voice.endTime) {
+                release(voice);
+            }
+        }
+
+        Trigger trigger;
+        while ((trigger = triggers.poll()) != null) {
+            Trigger existing = frameTriggers.get(trigger.path);
+            if (existing == null) {
+                frameTriggers.put(trigger.path, trigger);
+            } else {
+                existing.volume = Math.max(existing.volume, trigger.volume);
+                existing.priority = Math.max(existing.priority, trigger.priority);
+                merged++;
+                freeTriggers.add(trigger);
+            }
+        }
+
+        for (Trigger frameTrigger : frameTriggers.values()) {
+            play(frameTrigger, time);
+            freeTriggers.add(frameTrigger);
+        }
+        frameTriggers.clear();
+    }
+
+    private void play(Trigger trigger, long time) {
+        int limit = getLimit(trigger.path);
+        if (limit <= 0 || !assetManager.isLoaded(trigger.path, Sound.class)) {
+            dropped++;
+            return;
+        }
+
+        Voice free = null;
+        Voice oldestSame = null;
+        Voice victim = null;
+        int playing = 0;
+        for (Voice voice : voices) {
+            if (voice.path == null) {
+                if (free == null) {
+                    free = voice;
+                }
+            } else {
+                if (voice.path.equals(trigger.path)) {
+                    playing++;
+                    if (oldestSame == null || voice.startTime < oldestSame.startTime) {
+                        oldestSame = voice;
+                    }
+                }
+                if (victim == null || voice.priority < victim.priority
+                        || voice.priority == victim.priority && voice.startTime < victim.startTime) {
+                    victim = voice;
+                }
+            }
+        }
+
+        Voice voice;
+        if (playing >= limit) {
+            voice = oldestSame;
+        } else if (free != null) {
+            voice = free;
+        } else if (victim != null && victim.priority <= trigger.priority) {
+            voice = victim;
+        } else {
+            dropped++;
+            return;
+        }
+
+        if (voice.path != null) {
+            voice.sound.stop(voice.id);
+            release(voice);
+            stolen++;
+        }
+
+        Sound sound = assetCache.get(trigger.path, Sound.class);
+        long id = sound.play(trigger.volume, trigger.pitch, trigger.pan);
+        if (id == -1) {
+            dropped++;
+            return;
+        }
+        assetCache.pin(trigger.path);
+
+        voice.path = trigger.path;
+        voice.sound = sound;
+        voice.id = id;
+        voice.priority = trigger.priority;
+        voice.startTime = time;
+        voice.endTime = time + (long) (getDuration(trigger.path) * 1000 / Math.max(trigger.pitch, .01f));
+        played++;
+    }
+
+    /**
+     * Stops every playing voice.
+     */
+    public void stopAll() {
+        for (Voice voice : voices) {
+            if (voice.path != null) {
+                voice.sound.stop(voice.id);
+                release(voice);
+            }
+        }
+    }
+
+    /**
+     * Frees the voice, unpinning its sound once no other voice plays it.
+     * @param voice
+     */
+    private void release(Voice voice) {
+        String path = voice.path;
+        voice.path = null;
+        voice.sound = null;
+        for (Voice other : voices) {
+            if (path.equals(other.path)) {
+                return;
+            }
+        }
+        assetCache.unpin(path);
+    }
+
+    public int getLimit(String path) {
+        return limits.get(path, defaultLimit);
+    }
+
+    /**
+     * @param path
+     * @param limit The number of voices the sound may play on at once.
+     */
+    public void setLimit(String path, int limit) {
+        limits.put(path, limit);
+    }
+
+    public int getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    public void setDefaultLimit(int defaultLimit) {
+        this.defaultLimit = defaultLimit;
+    }
+
+    public float getDefaultDuration() {
+        return defaultDuration;
+    }
+
+    public void setDefaultDuration(float defaultDuration) {
+        this.defaultDuration = defaultDuration;
+    }
+
+    private float getDuration(String path) {
+        float duration = durations.get(path, -1);
+        if (duration < 0) {
+            duration = readDuration(assetManager.getFileHandleResolver().resolve(path));
+            if (duration <= 0) {
+                duration = defaultDuration;
+            }
+            durations.put(path, duration);
+        }
+        return duration;
+    }
+
+    /**
+     * Reads the length of a WAV or Ogg Vorbis file from its headers.
+     * @param file
+     * @return The length in seconds or 0 if it could not be read.
+     */
+    private float readDuration(FileHandle file) {
+        try {
+            String extension = file.extension().toLowerCase(Locale.ROOT);
+            byte[] header = new byte[44];
+            if (extension.equals("wav")) {
+                if (read(file, 0, header) < header.length || header[8] != 'W' || header[9] != 'A') {
+                    return 0;
+                }
+                int byteRate = readInt(header, 28);
+                return byteRate > 0 ? (float) (file.length() - header.length) / byteRate : 0;
+            } else if (extension.equals("ogg")) {
+                if (read(file, 0, header) < header.length || header[29] != 'v') {
+                    return 0;
+                }
+                int sampleRate = readInt(header, 40);
+                //the granule position of the last page is the total number of samples, so only the tail is read
+                long length = file.length();
+                byte[] tail = new byte[(int) Math.min(length, MAX_OGG_PAGE_SIZE)];
+                int count = read(file, length - tail.length, tail);
+                for (int i = count - 14; i >= 0; i--) {
+                    if (tail[i] == 'O' && tail[i + 1] == 'g' && tail[i + 2] == 'g' && tail[i + 3] == 'S') {
+                        long samples = (readInt(tail, i + 6) & 0xffffffffL) | (long) readInt(tail, i + 10) << 32;
+                        return sampleRate > 0 ? (float) samples / sampleRate : 0;
+                    }
+                }
+            }
+        } catch (GdxRuntimeException | IOException ex) {
+            Gdx.app.error(getClass().getName(), "Error reading duration of " + file.path(), ex);
+        }
+        return 0;
+    }
+
+    /**
+     * Reads bytes from an offset into the file without reading what comes
+     * before it.
+     * @param file
+     * @param offset
+     * @param bytes
+     * @return The number of bytes read, less than the array length if the file
+     * ended.
+     * @throws IOException
+     */
+    private int read(FileHandle file, long offset, byte[] bytes) throws IOException {
+        InputStream input = file.read();
+        try {
+            while (offset > 0) {
+                long skipped = input.skip(offset);
+                if (skipped <= 0) {
+                    if (input.read() == -1) {
+                        return 0;
+                    }
+                    skipped = 1;
+                }
+                offset -= skipped;
+            }
+
+            int count = 0;
+            while (count < bytes.length) {
+                int read = input.read(bytes, count, bytes.length - count);
+                if (read == -1) {
+                    break;
+                }
+                count += read;
+            }
+            return count;
+        } finally {
+            StreamUtils.closeQuietly(input);
+        }
+    }
+
+    private int readInt(byte[] bytes, int offset) {
+        return bytes[offset] & 0xff | (bytes[offset + 1] & 0xff) << 8 | (bytes[offset + 2] & 0xff) << 16 | (bytes[offset + 3] & 0xff) << 24;
+    }
+
+    /**
+     * @return The number of sounds played.
+     */
+    public int getPlayed() {
+        return played;
+    }
+
+    /**
+     * @return The number of triggers merged into another trigger of the same
+     * sound in the same frame.
+     */
+    public int getMerged() {
+        return merged;
+    }
+
+    /**
+     * @return The number of sounds that were not played because no voice
+     * could be freed for them or the sound was not loaded.
+     */
+    public int getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return The number of voices stopped to make room for another sound.
+     */
+    public int getStolen() {
+        return stolen;
+    }
+
+    private static class Trigger {
+        String path;
+        float volume;
+        float pitch;
+        float pan;
+        int priority;
+    }
+
+    private static class Voice {
+        String path;
+        Sound sound;
+        long id;
+        int priority;
+        long startTime;
+        long endTime;
+    }
+}
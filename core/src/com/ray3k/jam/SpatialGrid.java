@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * A uniform grid over an unbounded world for finding the items that overlap an
+ * area, typically the camera view. Every item is stored in each cell its
+ * bounds touch. Moving an item only touches the grid when its bounds enter a
+ * different set of cells, so items that move a little each frame cost a few
+ * comparisons. Choose a cell size around the size of the typical item; items
+ * much larger than a cell are stored in many cells. Items that would touch
+ * more than {@link #MAX_CELLS_PER_ITEM} cells are kept in a separate list
+ * that every query tests instead.
+ * @param <T>
+ */
+public class SpatialGrid<T> {
+    public static final int MAX_CELLS_PER_ITEM = 1024;
+    /**
+     * Cell coordinates are packed into the key as two shorts.
+     */
+    private static final int MAX_CELL = Short.MAX_VALUE;
+    private final float cellSize;
+    private final IntMap<Array<Entry<T>>> cells = new IntMap<>();
+    private final Array<Entry<T>> oversized = new Array<>(false, 8);
+    private int size;
+    private int queryId;
+
+    public SpatialGrid(float cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * @param item
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @return The handle used to move and remove the item.
+     */
+    public Entry<T> add(T item, float x, float y, float width, float height) {
+        Entry<T> entry = new Entry<>(item);
+        entry.setBounds(x, y, width, height);
+        entry.minX = cell(entry.x);
+        entry.minY = cell(entry.y);
+        entry.maxX = cell(entry.x + entry.width);
+        entry.maxY = cell(entry.y + entry.height);
+        insert(entry);
+        size++;
+        return entry;
+    }
+
+    /**
+     * Moves the item, updating the cells only if its bounds now touch other
+     * cells.
+     * @param entry
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    public void update(Entry<T> entry, float x, float y, float width, float height) {
+        entry.setBounds(x, y, width, height);
+        int minX = cell(entry.x), minY = cell(entry.y), maxX = cell(entry.x + entry.width), maxY = cell(entry.y + entry.height);
+        if (minX == entry.minX && minY == entry.minY && maxX == entry.maxX && maxY == entry.maxY) {
+            return;
+        }
+
+        erase(entry);
+        entry.minX = minX;
+        entry.minY = minY;
+        entry.maxX = maxX;
+        entry.maxY = maxY;
+        insert(entry);
+    }
+
+    public void remove(Entry<T> entry) {
+        erase(entry);
+        size--;
+    }
+
+    /**
+     * Adds every item whose bounds overlap the area to the array. Each item is
+     * added once, in no particular order.
+     * @param area
+     * @param out
+     * @return The array passed in.
+     */
+    public Array<T> query(Rectangle area, Array<T> out) {
+        int id = ++queryId;
+        int minX = cell(area.x), minY = cell(area.y), maxX = cell(area.x + area.width), maxY = cell(area.y + area.height);
+        float right = area.x + area.width, top = area.y + area.height;
+
+        for (Entry<T> entry : oversized) {
+            if (entry.x < right && entry.x + entry.width > area.x && entry.y < top && entry.y + entry.height > area.y) {
+                entry.queryId = id;
+                out.add(entry.item);
+            }
+        }
+
+        for (int cellX = minX; cellX <= maxX; cellX++) {
+            for (int cellY = minY; cellY <= maxY; cellY++) {
+                Array<Entry<T>> cell = cells.get(key(cellX, cellY));
+                if (cell == null) {
+                    continue;
+                }
+
+                Entry<T>[] entries = cell.items;
+                for (int i = 0, n = cell.size; i < n; i++) {
+                    Entry<T> entry = entries[i];
+                    if (entry.queryId != id && entry.x < right && entry.x + entry.width > area.x
+                            && entry.y < top && entry.y + entry.height > area.y) {
+                        entry.queryId = id;
+                        out.add(entry.item);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private void insert(Entry<T> entry) {
+        if ((long) (entry.maxX - entry.minX + 1) * (entry.maxY - entry.minY + 1) > MAX_CELLS_PER_ITEM) {
+            entry.oversized = true;
+            oversized.add(entry);
+            return;
+        }
+
+        entry.oversized = false;
+        for (int cellX = entry.minX; cellX <= entry.maxX; cellX++) {
+            for (int cellY = entry.minY; cellY <= entry.maxY; cellY++) {
+                int key = key(cellX, cellY);
+                Array<Entry<T>> cell = cells.get(key);
+                if (cell == null) {
+                    cell = new Array<>(false, 8);
+                    cells.put(key, cell);
+                }
+                cell.add(entry);
+            }
+        }
+    }
+
+    private void erase(Entry<T> entry) {
+        if (entry.oversized) {
+            oversized.removeValue(entry, true);
+            return;
+        }
+
+        for (int cellX = entry.minX; cellX <= entry.maxX; cellX++) {
+            for (int cellY = entry.minY; cellY <= entry.maxY; cellY++) {
+                Array<Entry<T>> cell = cells.get(key(cellX, cellY));
+                if (cell != null) {
+                    cell.removeValue(entry, true);
+                }
+            }
+        }
+    }
+
+    private int cell(float coordinate) {
+        int cell = (int) Math.floor(coordinate / cellSize);
+        return Math.max(-MAX_CELL, Math.min(cell, MAX_CELL));
+    }
+
+    private static int key(int cellX, int cellY) {
+        return cellX << 16 | cellY & 0xffff;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return The number of items in the grid.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * An item in the grid with its cached bounds.
+     * @param <T>
+     */
+    public static class Entry<T> {
+        public final T item;
+        float x;
+        float y;
+        float width;
+        float height;
+        int minX;
+        int minY;
+        int maxX;
+        int maxY;
+        int queryId;
+        boolean oversized;
+
+        Entry(T item) {
+            this.item = item;
+        }
+
+        void setBounds(float x, float y, float width, float height) {
+            //negative scales flip the bounds
+            this.x = width < 0 ? x + width : x;
+            this.y = height < 0 ? y + height : y;
+            this.width = Math.abs(width);
+            this.height = Math.abs(height);
+        }
+    }
+}
@@ -1,68 +1,328 @@
 package com.ray3k.jam;
 
 import com.badlogic.gdx.files.FileHandle;
-import java.io.BufferedOutputStream;
+import com.badlogic.gdx.utils.ObjectMap;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.net.URL;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
- 
+import java.util.zip.ZipFile;
+
 /**
  * This utility extracts files and directories of a standard zip file to
- * a destination directory.
+ * a destination directory. The archive is opened for random access so only
+ * the matching entries are inflated, and those are extracted in parallel.
+ * The CRC, size and time of every extracted entry are recorded in an index
+ * file next to the destination directory, so later calls only rewrite the
+ * entries that changed and delete the ones that were removed. Files are
+ * written to a temporary file first and renamed into place.
  * @author www.codejava.net
  *
  */
 public class UnzipUtility {
     /**
-     * Size of the buffer to read/write data
+     * Size of the pooled buffers used to read/write data
      */
-    private static final int BUFFER_SIZE = 4096;
-    
+    private static final int BUFFER_SIZE = 65536;
+    private static final String INDEX_EXTENSION = ".index";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+
     public void unzip(String zipFolder, FileHandle destinationFolder) throws IOException {
+        unzip(getJarFile(), zipFolder, destinationFolder);
+    }
+
+    /**
+     * Extracts a folder of the given archive instead of the running JAR.
+     * @param archive
+     * @param zipFolder
+     * @param destinationFolder
+     * @throws IOException
+     */
+    public void unzip(File archive, String zipFolder, FileHandle destinationFolder) throws IOException {
         destinationFolder.mkdirs();
-        
-        CodeSource src = getClass().getProtectionDomain().getCodeSource();
-        URL jar = src.getLocation();
-        ZipInputStream zipIn = new ZipInputStream(jar.openStream());
-        ZipEntry entry = zipIn.getNextEntry();
-        // iterates over entries in the zip file
-        while (entry != null) {
-            System.out.println(entry.isDirectory() + " " + entry.getName());
-            
-            if (entry.getName().replaceAll("\\\\", "/").startsWith(zipFolder.replaceAll("\\\\", "/"))) {
-                String name = entry.getName();
-                name = name.replaceFirst(zipFolder + "(/|\\\\)?", "");
-                FileHandle exportPath = destinationFolder.child(name);
+
+        String prefix = zipFolder.replace('\\', '/');
+        while (prefix.endsWith("/")) {
+            prefix = prefix.substring(0, prefix.length() - 1);
+        }
+
+        FileHandle indexFile = destinationFolder.sibling(destinationFolder.name() + INDEX_EXTENSION);
+        ObjectMap<String, IndexEntry> oldIndex = readIndex(indexFile);
+        ObjectMap<String, IndexEntry> newIndex = new ObjectMap<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try (ZipFile zipFile = new ZipFile(archive)) {
+            List<Future<Void>> futures = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            // iterates over entries in the zip file
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                String name = getRelativeName(entry.getName().replace('\\', '/'), prefix);
+                if (name == null) {
+                    continue;
+                }
+
+                final FileHandle exportPath = destinationFolder.child(name);
                 if (!entry.isDirectory()) {
-                    extractFile(zipIn, exportPath);
+                    IndexEntry indexEntry = new IndexEntry(entry);
+                    newIndex.put(name, indexEntry);
+                    //unchanged since the last extraction, only check that the file is still intact
+                    if (indexEntry.equals(oldIndex.get(name)) && exportPath.file().length() == entry.getSize()) {
+                        continue;
+                    }
+
+                    futures.add(executor.submit(() -> {
+                        extractFile(zipFile, entry, exportPath);
+                        return null;
+                    }));
                 } else {
                     exportPath.mkdirs();
                 }
             }
-            zipIn.closeEntry();
-            entry = zipIn.getNextEntry();
+
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof IOException) {
+                        throw (IOException) ex.getCause();
+                    }
+                    throw new IOException("Error extracting " + zipFolder, ex.getCause());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while extracting " + zipFolder, ex);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //remove files extracted previously that are no longer in the archive
+        for (String name : oldIndex.keys()) {
+            if (!newIndex.containsKey(name)) {
+                destinationFolder.child(name).delete();
+            }
+        }
+
+        writeIndex(indexFile, newIndex);
+    }
+
+    private ObjectMap<String, IndexEntry> readIndex(FileHandle indexFile) throws IOException {
+        ObjectMap<String, IndexEntry> index = new ObjectMap<>();
+        if (!indexFile.exists()) {
+            return index;
+        }
+
+        try (BufferedReader reader = new BufferedReader(indexFile.reader("UTF-8"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                if (fields.length == 4) {
+                    try {
+                        index.put(fields[3], new IndexEntry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+                    } catch (NumberFormatException ex) {
+                        //a damaged line only causes that entry to be extracted again
+                    }
+                }
+            }
         }
-        zipIn.close();
+        return index;
     }
-    
+
+    private void writeIndex(FileHandle indexFile, ObjectMap<String, IndexEntry> index) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (ObjectMap.Entry<String, IndexEntry> entry : index) {
+            builder.append(entry.value.crc).append('\t').append(entry.value.size).append('\t').append(entry.value.time).append('\t').append(entry.key).append('\n');
+        }
+
+        File file = indexFile.file();
+        File temp = new File(file.getPath() + TEMP_EXTENSION);
+        Files.write(temp.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+        replace(temp, file);
+    }
+
     /**
-     * Extracts a zip entry (file entry)
-     * @param zipIn
+     * @param name
+     * @param prefix
+     * @return The entry name relative to the prefix folder or null if the entry
+     * is not located inside of it.
+     */
+    private String getRelativeName(String name, String prefix) {
+        if (prefix.isEmpty()) {
+            return name.isEmpty() ? null : name;
+        }
+
+        if (!name.startsWith(prefix) || name.length() <= prefix.length() + 1 || name.charAt(prefix.length()) != '/') {
+            return null;
+        }
+        return name.substring(prefix.length() + 1);
+    }
+
+    private File getJarFile() throws IOException {
+        CodeSource src = getClass().getProtectionDomain().getCodeSource();
+        try {
+            return new File(src.getLocation().toURI());
+        } catch (URISyntaxException ex) {
+            throw new IOException("Error locating JAR", ex);
+        }
+    }
+
+    /**
+     * Extracts a zip entry (file entry) unless the file is already up to date
+     * @param zipFile
+     * @param entry
      * @param filePath
      * @throws IOException
      */
-    private void extractFile(ZipInputStream zipIn, FileHandle filePath) throws IOException {
-        BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(filePath.file()));
-        byte[] bytesIn = new byte[BUFFER_SIZE];
-        int read = 0;
-        while ((read = zipIn.read(bytesIn)) != -1) {
-            bos.write(bytesIn, 0, read);
-        }
-        bos.close();
+    private void extractFile(ZipFile zipFile, ZipEntry entry, FileHandle filePath) throws IOException {
+        File file = filePath.file();
+        if (isUpToDate(file, entry)) {
+            return;
+        }
+        file.getParentFile().mkdirs();
+
+        //write next to the target and rename so a crash never leaves a torn file
+        File temp = new File(file.getPath() + TEMP_EXTENSION);
+        try {
+            try (ReadableByteChannel in = Channels.newChannel(zipFile.getInputStream(entry));
+                    FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = entry.getSize();
+                if (size >= 0) {
+                    long position = 0;
+                    while (position < size) {
+                        long transferred = out.transferFrom(in, position, size - position);
+                        if (transferred <= 0) {
+                            break;
+                        }
+                        position += transferred;
+                    }
+                    if (position < size) {
+                        throw new IOException("Truncated zip entry " + entry.getName() + ": " + position + " of " + size + " bytes");
+                    }
+                } else {
+                    byte[] bytes = obtainBuffer();
+                    try {
+                        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                        while (in.read(buffer) != -1) {
+                            buffer.flip();
+                            while (buffer.hasRemaining()) {
+                                out.write(buffer);
+                            }
+                            buffer.clear();
+                        }
+                    } finally {
+                        freeBuffer(bytes);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            //never leave a partial file behind to be renamed or indexed later
+            temp.delete();
+            throw ex;
+        }
+        replace(temp, file);
+    }
+
+    private void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private boolean isUpToDate(File file, ZipEntry entry) throws IOException {
+        if (!file.isFile() || entry.getCrc() == -1 || file.length() != entry.getSize()) {
+            return false;
+        }
+
+        CRC32 crc = new CRC32();
+        byte[] bytes = obtainBuffer();
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(bytes)) != -1) {
+                crc.update(bytes, 0, read);
+            }
+        } finally {
+            freeBuffer(bytes);
+        }
+        return crc.getValue() == entry.getCrc();
+    }
+
+    private byte[] obtainBuffer() {
+        byte[] bytes = buffers.poll();
+        return bytes == null ? new byte[BUFFER_SIZE] : bytes;
+    }
+
+    private void freeBuffer(byte[] bytes) {
+        buffers.add(bytes);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads The number of entries extracted in parallel
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * The state of an extracted entry as recorded in the index file
+     */
+    private static class IndexEntry {
+        final long crc;
+        final long size;
+        final long time;
+
+        IndexEntry(ZipEntry entry) {
+            this(entry.getCrc(), entry.getSize(), entry.getTime());
+        }
+
+        IndexEntry(long crc, long size, long time) {
+            this.crc = crc;
+            this.size = size;
+            this.time = time;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof IndexEntry)) {
+                return false;
+            }
+            IndexEntry other = (IndexEntry) obj;
+            return crc == other.crc && size == other.size && time == other.time;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(crc);
+        }
     }
-}
\ No newline at end of file
+}
@@ -26,6 +26,7 @@ package com.ray3k.jam.screens;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.graphics.GL20;
+import com.ray3k.jam.AssetGroups;
 import com.ray3k.jam.Core;
 
 /**
@@ -33,11 +34,16 @@ import com.ray3k.jam.Core;
  * @author Raymond
  */
 public class CreditsScreen implements Screen {
+    private final Core core;
+
     public CreditsScreen(Core core) {
+        this.core = core;
     }
     
     @Override
     public void show() {
+        core.assetGroups.switchTo(AssetGroups.CREDITS, AssetGroups.MENU);
+        core.musicPlayer.play(AssetGroups.CREDITS);
     }
 
     @Override
@@ -61,6 +67,7 @@ public class CreditsScreen implements Screen {
 
     @Override
     public void hide() {
+        core.assetGroups.release(AssetGroups.CREDITS);
     }
 
     @Override
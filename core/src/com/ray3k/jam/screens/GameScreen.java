@@ -26,30 +26,175 @@ package com.ray3k.jam.screens;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Rectangle;
+import com.ray3k.jam.AssetGroups;
 import com.ray3k.jam.Core;
+import com.ray3k.jam.EntityStore;
+import com.ray3k.jam.FixedTimestep;
+import com.ray3k.jam.MovementSystem;
+import com.ray3k.jam.SkeletonInstances;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  *
  * @author Raymond
  */
-public class GameScreen implements Screen {
+public class GameScreen implements Screen, FixedTimestep.Simulation<GameState> {
+
+    private static final float WORLD_WIDTH = 800;
+    private static final float WORLD_HEIGHT = 800;
+    private static final float ENTITY_SIZE = 8;
+    private static final float MAX_ENTITY_SPEED = 100;
+    private final Core core;
+    private FixedTimestep<GameState> timestep;
+    private final MovementSystem movementSystem = new MovementSystem(WORLD_WIDTH, WORLD_HEIGHT);
+    private final OrthographicCamera camera = new OrthographicCamera();
+    private final Rectangle view = new Rectangle();
+    private final SkeletonInstances skeletons = new SkeletonInstances();
+    /**
+     * Entities waiting to be added to the simulation state by the next step.
+     */
+    private final ConcurrentLinkedQueue<Spawn> spawns = new ConcurrentLinkedQueue<>();
+    /**
+     * Draws skeletons through the render queue, grouping them by texture at
+     * the cost of clipping and of the overlap order between skeletons.
+     */
+    private boolean sortDraws;
+    /**
+     * The interpolated simulation time of the last rendered frame.
+     */
+    private float renderTime;
 
     public GameScreen(Core core) {
+        this.core = core;
     }
     
     @Override
     public void show() {
+        core.assetGroups.switchTo(AssetGroups.GAME, AssetGroups.MENU);
+        core.musicPlayer.play(AssetGroups.GAME);
+        
+        sortDraws = core.preferences.getBoolean("sortDraws", false);
+        timestep = new FixedTimestep<>(this, core.preferences.getInteger("simulationRate", 60));
+        renderTime = 0;
+        //a seeded starting population keeps runs comparable
+        RandomXS128 random = new RandomXS128(core.preferences.getInteger("entitySeed", 0));
+        for (int i = 0, n = core.preferences.getInteger("entityCount", 0); i < n; i++) {
+            spawn(random.nextFloat() * WORLD_WIDTH, random.nextFloat() * WORLD_HEIGHT,
+                    (random.nextFloat() * 2 - 1) * MAX_ENTITY_SPEED, (random.nextFloat() * 2 - 1) * MAX_ENTITY_SPEED);
+        }
+        if (core.preferences.getBoolean("simulationThreaded", false)) {
+            timestep.start();
+        }
     }
 
     @Override
     public void render(float delta) {
+        timestep.update(delta);
+        GameState previous = timestep.getPrevious();
+        GameState current = timestep.getCurrent();
+        float alpha = timestep.getAlpha();
+        
+        //skeletons are animated by the interpolated simulation time so they stay in step with the simulation
+        float time = MathUtils.lerp(previous.time, current.time, alpha);
+        float skeletonDelta = Math.max(0, time - renderTime);
+        renderTime = time;
+        
+        //animate skeletons on the worker threads while the screen is cleared
+        camera.update();
+        view.set(camera.position.x - camera.viewportWidth / 2 * camera.zoom, camera.position.y - camera.viewportHeight / 2 * camera.zoom,
+                camera.viewportWidth * camera.zoom, camera.viewportHeight * camera.zoom);
+        skeletons.start(skeletonDelta, view);
+        
         Gdx.gl.glClearColor(0, 0, 0, 1);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
         
+        draw(previous, current, alpha);
+    }
+    
+    /**
+     * Draws the game between two simulation steps.
+     * @param previous
+     * @param current
+     * @param alpha How far between the states to interpolate, from 0 to 1.
+     */
+    private void draw(GameState previous, GameState current, float alpha) {
+        core.batch.setProjectionMatrix(camera.combined);
+        core.batch.begin();
+        drawEntities(previous.entities, current.entities, alpha);
+        if (sortDraws) {
+            skeletons.draw(core.renderQueue, core.skeletonRenderer.getPremultipliedAlpha());
+            core.renderQueue.flush(core.batch);
+        } else {
+            skeletons.draw(core.batch, core.skeletonRenderer);
+        }
+        core.batch.end();
+    }
+
+    /**
+     * Draws every entity at its position interpolated between the two states.
+     * Entities are matched by handle, as their dense indices may differ.
+     * @param previous
+     * @param current
+     * @param alpha
+     */
+    private void drawEntities(EntityStore previous, EntityStore current, float alpha) {
+        TextureRegion region = core.runtimeAtlas.getWhiteRegion();
+        float[] x = current.getX();
+        float[] y = current.getY();
+        float[] previousX = previous.getX();
+        float[] previousY = previous.getY();
+        int[] handles = current.getHandles();
+        for (int i = 0, n = current.size(); i < n; i++) {
+            int index = previous.indexOf(handles[i]);
+            float fromX = index == EntityStore.NONE ? x[i] : previousX[index];
+            float fromY = index == EntityStore.NONE ? y[i] : previousY[index];
+            core.batch.draw(region, MathUtils.lerp(fromX, x[i], alpha) - ENTITY_SIZE / 2, MathUtils.lerp(fromY, y[i], alpha) - ENTITY_SIZE / 2,
+                    ENTITY_SIZE, ENTITY_SIZE);
+        }
+    }
+
+    /**
+     * Adds an entity to the simulation with its next step. This may be called
+     * from any thread.
+     * @param x
+     * @param y
+     * @param velocityX
+     * @param velocityY
+     */
+    public void spawn(float x, float y, float velocityX, float velocityY) {
+        spawns.add(new Spawn(x, y, velocityX, velocityY));
+    }
+
+    @Override
+    public GameState createState() {
+        return new GameState();
+    }
+
+    @Override
+    public void step(GameState state, float timeStep) {
+        state.time += timeStep;
+        Spawn spawn;
+        while ((spawn = spawns.poll()) != null) {
+            int index = state.entities.indexOf(state.entities.create(spawn.x, spawn.y));
+            state.entities.getVelocityX()[index] = spawn.velocityX;
+            state.entities.getVelocityY()[index] = spawn.velocityY;
+        }
+        movementSystem.update(state.entities, timeStep);
+    }
+
+    @Override
+    public void copy(GameState from, GameState to) {
+        to.set(from);
     }
     
     @Override
     public void resize(int width, int height) {
+        camera.setToOrtho(false, width, height);
     }
 
     @Override
@@ -62,10 +207,27 @@ public class GameScreen implements Screen {
 
     @Override
     public void hide() {
+        core.assetGroups.release(AssetGroups.GAME);
+        timestep.dispose();
+        spawns.clear();
+        skeletons.clear();
     }
 
     @Override
     public void dispose() {
     }
-   
+
+    private static class Spawn {
+        final float x;
+        final float y;
+        final float velocityX;
+        final float velocityY;
+
+        Spawn(float x, float y, float velocityX, float velocityY) {
+            this.x = x;
+            this.y = y;
+            this.velocityX = velocityX;
+            this.velocityY = velocityY;
+        }
+    }
 }
@@ -27,8 +27,6 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.scenes.scene2d.Action;
 import com.badlogic.gdx.scenes.scene2d.Stage;
@@ -42,14 +40,24 @@ import com.badlogic.gdx.utils.viewport.ScreenViewport;
 import com.ray3k.jam.Core;
 
 public class LoadScreen implements Screen {
+    private static final int DEFAULT_FRAME_RATE = 60;
+    private static final int MIN_BUDGET_MILLIS = 1;
     private final Core core;
     private final Stage stage;
     private final Skin skin;
     private ProgressBar progressBar;
     private boolean finishedLoading;
+    private final int maxBudgetMillis;
+    private int budgetMillis;
+    private final float targetFrameTime;
 
     public LoadScreen(Core core) {
         this.core = core;
+        maxBudgetMillis = Math.max(MIN_BUDGET_MILLIS, core.preferences.getInteger("loadingBudget", 12));
+        budgetMillis = maxBudgetMillis;
+        //the display's refresh rate unless overridden, it is 0 when unknown
+        int frameRate = core.preferences.getInteger("targetFrameRate", Gdx.graphics.getDisplayMode().refreshRate);
+        targetFrameTime = 1f / (frameRate > 0 ? frameRate : DEFAULT_FRAME_RATE);
         stage = new Stage(new ScreenViewport(), core.batch);
         skin = createSkin();
         finishedLoading = false;
@@ -66,13 +74,30 @@ public class LoadScreen implements Screen {
         Gdx.gl.glClearColor(0, 0, 0, 1);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
         
-        progressBar.setValue(core.assetManager.getProgress());
+        progressBar.setValue(Math.min(core.assetManager.getProgress(), core.assetPipeline.getProgress()));
         stage.act();
         stage.draw();
         
-        if (!finishedLoading && core.assetManager.update()) {
-            finishedLoading = true;
-            progressBar.addAction(Actions.sequence(Actions.fadeOut(1f), new LoadingCompleteAction(core)));
+        if (!finishedLoading) {
+            adjustBudget(delta);
+            if (core.assetGroups.update(budgetMillis)) {
+                finishedLoading = true;
+                progressBar.addAction(Actions.sequence(Actions.fadeOut(1f), new LoadingCompleteAction(core)));
+            }
+        }
+    }
+
+    /**
+     * Spends as much of each frame on loading as possible while keeping the
+     * frame rate smooth. The budget shrinks quickly when a frame overruns the
+     * target frame time and grows back slowly otherwise.
+     * @param delta
+     */
+    private void adjustBudget(float delta) {
+        if (delta > targetFrameTime * 1.25f) {
+            budgetMillis = Math.max(MIN_BUDGET_MILLIS, budgetMillis * 3 / 4);
+        } else {
+            budgetMillis = Math.min(maxBudgetMillis, budgetMillis + 1);
         }
     }
 
@@ -99,13 +124,18 @@ public class LoadScreen implements Screen {
         skin.dispose();
     }
     
-    private Drawable createDrawable(int width, int height, Color color) {
-        Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
-        pixmap.setColor(color);
-        pixmap.fillRectangle(0, 0, width, height);
-        
-        Texture texture = new Texture(pixmap);
-        TextureRegionDrawable textureRegionDrawable = new TextureRegionDrawable(new TextureRegion(texture));
+    /**
+     * Creates a drawable of a single color, packed into the runtime atlas so
+     * every drawable of the skin shares a texture.
+     * @param name
+     * @param width
+     * @param height
+     * @param color
+     * @return
+     */
+    private Drawable createDrawable(String name, int width, int height, Color color) {
+        TextureRegion region = core.runtimeAtlas.pack(name, width, height, color);
+        TextureRegionDrawable textureRegionDrawable = new TextureRegionDrawable(region);
         textureRegionDrawable.setMinWidth(0);
         return textureRegionDrawable;
     }
@@ -113,13 +143,15 @@ public class LoadScreen implements Screen {
     private Skin createSkin() {
         Skin returnValue = new Skin();
         
-        returnValue.add("progress-bar", createDrawable(1, 20, Color.WHITE), Drawable.class);
+        returnValue.add("progress-bar", createDrawable("load-progress-bar", 1, 20, Color.WHITE), Drawable.class);
         
         ProgressBar.ProgressBarStyle progressBarStyle = new ProgressBar.ProgressBarStyle();
 
         progressBarStyle.knobBefore = returnValue.getDrawable("progress-bar");
         
         returnValue.add("default-horizontal", progressBarStyle);
+        //upload the packed drawables before the first frame
+        core.runtimeAtlas.update();
         
         return returnValue;
     }
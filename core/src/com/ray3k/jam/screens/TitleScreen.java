@@ -26,6 +26,7 @@ package com.ray3k.jam.screens;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.graphics.GL20;
+import com.ray3k.jam.AssetGroups;
 import com.ray3k.jam.Core;
 
 /**
@@ -34,11 +35,16 @@ import com.ray3k.jam.Core;
  */
 public class TitleScreen implements Screen {
 
+    private final Core core;
+
     public TitleScreen(final Core core) {
+        this.core = core;
     }
 
     @Override
     public void show() {
+        core.assetGroups.switchTo(AssetGroups.TITLE, AssetGroups.MENU);
+        core.musicPlayer.play(AssetGroups.TITLE);
     }
 
     @Override
@@ -61,6 +67,7 @@ public class TitleScreen implements Screen {
 
     @Override
     public void hide() {
+        core.assetGroups.release(AssetGroups.TITLE);
     }
 
     @Override
@@ -0,0 +1,284 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.headless;
+
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.ray3k.jam.Core;
+import com.ray3k.jam.screens.CreditsScreen;
+import com.ray3k.jam.screens.GameScreen;
+import com.ray3k.jam.screens.LoadScreen;
+import com.ray3k.jam.screens.MenuScreen;
+import com.ray3k.jam.screens.TitleScreen;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Runs {@link Core} without a window or GPU to benchmark loading and screen
+ * logic. Core boots through the {@link LoadScreen}, then each screen of the
+ * script is shown and rendered for a number of frames once its assets have
+ * loaded and the warmup frames have passed. The load time and, for every
+ * screen, the CPU time and allocations per frame are printed as JSON and
+ * optionally written to a file.
+ * <p>
+ * Options: --script title,menu,game,credits --frames 600 --warmup 120
+ * --output results.json --baseline previous.json --tolerance 0.2
+ * <p>
+ * With a baseline, the process exits with status 1 if the load time or the
+ * median frame time of any screen is slower than the baseline by more than
+ * the tolerance.
+ */
+public class HeadlessLauncher implements ApplicationListener {
+    /**
+     * Gives up if loading takes longer than this many frames.
+     */
+    private static final int MAX_LOAD_FRAMES = 100000;
+    private final Core core = new Core();
+    private final String[] script;
+    private final int frames;
+    private final int warmup;
+    private final String output;
+    private final String baseline;
+    private final float tolerance;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final long[] frameNanos;
+    private final long[] frameBytes;
+    private final Array<String> results = new Array<>();
+    private long bootStart;
+    private long loadNanos = -1;
+    private int loadFrames;
+    private int scriptIndex = -1;
+    private int frame;
+    private boolean regressed;
+
+    public HeadlessLauncher(String[] script, int frames, int warmup, String output, String baseline, float tolerance) {
+        this.script = script;
+        this.frames = frames;
+        this.warmup = warmup;
+        this.output = output;
+        this.baseline = baseline;
+        this.tolerance = tolerance;
+        frameNanos = new long[frames];
+        frameBytes = new long[frames];
+    }
+
+    public static void main(String[] args) {
+        String script = "title,menu,game,credits";
+        int frames = 600;
+        int warmup = 120;
+        String output = null;
+        String baseline = null;
+        float tolerance = .2f;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--script":
+                    script = args[i + 1];
+                    break;
+                case "--frames":
+                    frames = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--output":
+                    output = args[i + 1];
+                    break;
+                case "--baseline":
+                    baseline = args[i + 1];
+                    break;
+                case "--tolerance":
+                    tolerance = Float.parseFloat(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        //render as fast as possible, frame times are measured rather than paced
+        config.renderInterval = 0;
+        new HeadlessApplication(new HeadlessLauncher(script.isEmpty() ? new String[0] : script.split(","), frames, warmup, output, baseline, tolerance), config);
+    }
+
+    @Override
+    public void create() {
+        Gdx.gl = Gdx.gl20 = MockGL20.create();
+        bootStart = System.nanoTime();
+        core.create();
+    }
+
+    @Override
+    public void render() {
+        long bytes = getAllocatedBytes();
+        long start = System.nanoTime();
+        core.render();
+        long nanos = System.nanoTime() - start;
+        bytes = getAllocatedBytes() - bytes;
+
+        if (scriptIndex == -1) {
+            loadFrames++;
+            if (loadNanos == -1 && core.assetGroups.isIdle()) {
+                loadNanos = System.nanoTime() - bootStart;
+            }
+            if (!(core.getScreen() instanceof LoadScreen)) {
+                results.add(String.format(Locale.ROOT, "\"load\":{\"millis\":%.3f,\"frames\":%d}", loadNanos / 1000000.0, loadFrames));
+                nextScreen();
+            } else if (loadFrames > MAX_LOAD_FRAMES) {
+                Gdx.app.error(getClass().getName(), "Loading did not finish after " + MAX_LOAD_FRAMES + " frames");
+                regressed = true;
+                Gdx.app.exit();
+            }
+        } else if (scriptIndex < script.length) {
+            //screens load their own groups in the background, only measure once they are done
+            if (frame < warmup || !core.assetGroups.isIdle()) {
+                frame = Math.min(frame + 1, warmup);
+                return;
+            }
+
+            int index = frame - warmup;
+            frameNanos[index] = nanos;
+            frameBytes[index] = bytes;
+            frame++;
+            if (index + 1 == frames) {
+                results.add(summarize(script[scriptIndex]));
+                nextScreen();
+            }
+        }
+    }
+
+    private void nextScreen() {
+        scriptIndex++;
+        frame = 0;
+        if (scriptIndex < script.length) {
+            core.setScreen(createScreen(script[scriptIndex]));
+        } else {
+            finish();
+        }
+    }
+
+    private Screen createScreen(String name) {
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "title":
+                return new TitleScreen(core);
+            case "menu":
+                return new MenuScreen(core);
+            case "game":
+                return new GameScreen(core);
+            case "credits":
+                return new CreditsScreen(core);
+            default:
+                throw new IllegalArgumentException("Unknown screen: " + name);
+        }
+    }
+
+    private String summarize(String name) {
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < frames; i++) {
+            totalNanos += frameNanos[i];
+            totalBytes += frameBytes[i];
+        }
+        Arrays.sort(frameNanos);
+        return String.format(Locale.ROOT, "\"%s\":{\"frames\":%d,\"meanMillis\":%.4f,\"p50Millis\":%.4f,\"p99Millis\":%.4f,\"maxMillis\":%.4f,"
+                + "\"bytesPerFrame\":%d,\"megabytesPerSecond\":%.3f}",
+                name, frames, totalNanos / 1000000.0 / frames, frameNanos[frames / 2] / 1000000.0,
+                frameNanos[Math.min(frames - 1, frames * 99 / 100)] / 1000000.0, frameNanos[frames - 1] / 1000000.0,
+                totalBytes / frames, totalNanos == 0 ? 0 : totalBytes / (1024.0 * 1024.0) / (totalNanos / 1000000000.0));
+    }
+
+    private void finish() {
+        String json = "{" + results.toString(",") + "}";
+        System.out.println(json);
+        if (output != null) {
+            new FileHandle(new File(output)).writeString(json, false, "UTF-8");
+        }
+        if (baseline != null) {
+            compare(new JsonReader().parse(json), new JsonReader().parse(new FileHandle(new File(baseline))));
+        }
+        Gdx.app.exit();
+    }
+
+    private void compare(JsonValue current, JsonValue previous) {
+        compare("load", current.get("load"), previous.get("load"), "millis");
+        for (String name : script) {
+            compare(name, current.get(name), previous.get(name), "p50Millis");
+        }
+    }
+
+    private void compare(String name, JsonValue current, JsonValue previous, String field) {
+        if (current == null || previous == null) {
+            return;
+        }
+        float value = current.getFloat(field);
+        float limit = previous.getFloat(field) * (1f + tolerance);
+        if (value > limit) {
+            Gdx.app.error(getClass().getName(), String.format(Locale.ROOT, "%s %s regressed: %.4f > %.4f", name, field, value, limit));
+            regressed = true;
+        }
+    }
+
+    /**
+     * @return The bytes allocated by the render thread so far or 0 if the JVM
+     * doesn't track allocations per thread.
+     */
+    private long getAllocatedBytes() {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        core.resize(width, height);
+    }
+
+    @Override
+    public void pause() {
+        core.pause();
+    }
+
+    @Override
+    public void resume() {
+        core.resume();
+    }
+
+    @Override
+    public void dispose() {
+        core.dispose();
+        if (regressed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.jam.headless;
+
+import com.badlogic.gdx.graphics.GL20;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.IntBuffer;
+
+/**
+ * A GL20 that does nothing, so rendering code runs without a GPU. Every object
+ * created gets a fresh handle, shaders and programs always compile and link,
+ * and queries report no errors.
+ */
+public class MockGL20 implements InvocationHandler {
+    private int handles = 1;
+
+    public static GL20 create() {
+        return (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[] {GL20.class}, new MockGL20());
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "glGetShaderiv":
+            case "glGetProgramiv":
+                //compile and link status, without any active attributes or uniforms to enumerate
+                int pname = (Integer) args[1];
+                boolean active = pname == GL20.GL_ACTIVE_ATTRIBUTES || pname == GL20.GL_ACTIVE_UNIFORMS;
+                put((IntBuffer) args[2], active ? 0 : 1);
+                return null;
+            case "glGetIntegerv":
+                put((IntBuffer) args[1], 4096);
+                return null;
+            case "glGetError":
+                return GL20.GL_NO_ERROR;
+            case "glCheckFramebufferStatus":
+                return GL20.GL_FRAMEBUFFER_COMPLETE;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return getClass().getSimpleName();
+        }
+
+        Class<?> type = method.getReturnType();
+        if (type == int.class) {
+            return handles++;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == String.class) {
+            return "";
+        }
+        return null;
+    }
+
+    private void put(IntBuffer buffer, int value) {
+        if (buffer.remaining() > 0) {
+            buffer.put(buffer.position(), value);
+        }
+    }
+}